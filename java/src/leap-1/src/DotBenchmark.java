@@ -0,0 +1,87 @@
+import processing.core.PApplet;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Logger;
+
+import util.*;
+
+/**
+ * Compares drawing dots one ShapeUtil.drawCircle() call at a time with drawing them through a DotBatch. No Leap Motion needed.
+ *
+ * The same dots are drawn every frame, switching between the two paths every MODE_FRAMES frames, and the mean time spent drawing them is
+ * logged for each path. Drawing with JAVA2D only saves the state changes; set RENDERER to P2D to measure the batched geometry.
+ */
+public class DotBenchmark extends PApplet {
+	// Logging:
+	private final static Logger LOGGER = Logger.getLogger("DotBenchmarkLogger");
+	private final static int WINDOW_WIDTH = 1000;
+	private final static int WINDOW_HEIGHT = 600;
+	private final static String RENDERER = JAVA2D;
+
+	private final static int DOT_COUNT = 5000;
+	private final static int MODE_FRAMES = 120;
+	// Skip the first frames of each mode, while the renderer warms up.
+	private final static int WARMUP_FRAMES = 20;
+	private final static int[][] FILLS = new int[][] { { 255, 0, 0 }, { 0, 255, 0 }, { 0, 0, 255 }, { 255, 255, 0 } };
+	private final static int[] ALPHAS = new int[] { 255, 191, 127, 63 };
+
+	private static Dot[] dots = new Dot[DOT_COUNT];
+	private static DotBatch dotBatch = new DotBatch();
+	private static boolean batched = false;
+	private static int modeFrame = 0;
+	private static long modeNanos = 0;
+
+	/**
+	 * HACK: Get this PApplet to run from command line.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		PApplet.main(DotBenchmark.class.getName());
+	}
+
+	public void setup() {
+		// This must be the first line of code in setup():
+		size(WINDOW_WIDTH, WINDOW_HEIGHT, RENDERER);
+
+		// Setup logging.
+		LOGGER.setLevel(java.util.logging.Level.INFO);
+		LOGGER.addHandler(new ConsoleHandler());
+
+		// Same dots every run: the fills in runs, as a trail would leave them, with the alphas mixed in between.
+		Random random = new Random(0);
+		for (int i = 0; i < DOT_COUNT; i++) {
+			Point2D.Float center = new Point2D.Float(random.nextFloat() * WINDOW_WIDTH, random.nextFloat() * WINDOW_HEIGHT);
+			dots[i] = new Dot(center, 5 + random.nextFloat() * 20, FILLS[i * FILLS.length / DOT_COUNT], ShapeUtil.DEFAULT_STROKE_COLOR,
+					ShapeUtil.DEFAULT_STROKE_WEIGHT, ALPHAS[i % ALPHAS.length]);
+		}
+	}
+
+	public void draw() {
+		background(255);
+		long start = System.nanoTime();
+		if (batched) {
+			dotBatch.clear();
+			for (int i = 0; i < DOT_COUNT; i++)
+				dotBatch.add(dots[i]);
+			dotBatch.draw(this);
+		} else {
+			for (int i = 0; i < DOT_COUNT; i++)
+				ShapeUtil.drawDot(this, dots[i]);
+		}
+		// Make sure the renderer has drawn everything, not just queued it.
+		flush();
+		if (modeFrame >= WARMUP_FRAMES)
+			modeNanos += System.nanoTime() - start;
+
+		if (++modeFrame == MODE_FRAMES) {
+			LOGGER.info(String.format("%s, %d dots: %.2f ms per frame.", batched ? "DotBatch" : "ShapeUtil.drawDot()", DOT_COUNT, modeNanos
+					/ 1000000f / (MODE_FRAMES - WARMUP_FRAMES)));
+			batched = !batched;
+			modeFrame = 0;
+			modeNanos = 0;
+		}
+	}
+}
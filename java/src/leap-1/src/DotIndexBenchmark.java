@@ -0,0 +1,102 @@
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Logger;
+
+import util.*;
+
+/**
+ * Compares finding the dot under a point with a DotIndex against testing every dot with Dot.containsPoint(). No window or Leap Motion
+ * needed.
+ */
+public class DotIndexBenchmark {
+	// Logging:
+	private final static Logger LOGGER = Logger.getLogger("DotIndexBenchmarkLogger");
+	private final static int WINDOW_WIDTH = 1000;
+	private final static int WINDOW_HEIGHT = 600;
+
+	private final static int[] DOT_COUNTS = { 1000, 10000, 100000 };
+	private final static float RADIUS_MIN = 2;
+	private final static float RADIUS_MAX = 6;
+	private final static float CELL_SIZE = 2 * RADIUS_MAX;
+	private final static int QUERY_COUNT = 20000;
+	// Run each measurement a few times so the JIT has compiled it by the last.
+	private final static int ROUNDS = 3;
+	private final static int[] DOT_RGB = new int[] { 255, 0, 0 };
+
+	public static void main(String[] args) {
+		LOGGER.setLevel(java.util.logging.Level.INFO);
+		LOGGER.addHandler(new ConsoleHandler());
+
+		for (int d = 0; d < DOT_COUNTS.length; d++) {
+			Random random = new Random(0);
+			List<Dot> dots = new ArrayList<Dot>(DOT_COUNTS[d]);
+			DotIndex index = new DotIndex(WINDOW_WIDTH, WINDOW_HEIGHT, CELL_SIZE);
+			for (int i = 0; i < DOT_COUNTS[d]; i++) {
+				Point2D.Float center = new Point2D.Float(random.nextFloat() * WINDOW_WIDTH, random.nextFloat() * WINDOW_HEIGHT);
+				Dot dot = new Dot(center, RADIUS_MIN + random.nextFloat() * (RADIUS_MAX - RADIUS_MIN), DOT_RGB);
+				dots.add(dot);
+				index.insert(dot);
+			}
+			float[] xs = new float[QUERY_COUNT];
+			float[] ys = new float[QUERY_COUNT];
+			for (int q = 0; q < QUERY_COUNT; q++) {
+				xs[q] = random.nextFloat() * WINDOW_WIDTH;
+				ys[q] = random.nextFloat() * WINDOW_HEIGHT;
+			}
+
+			long scanNanos = 0, indexNanos = 0;
+			int scanHits = 0, indexHits = 0;
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				scanHits = 0;
+				for (int q = 0; q < QUERY_COUNT; q++) {
+					if (scan(dots, xs[q], ys[q]) != null)
+						scanHits++;
+				}
+				scanNanos = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				indexHits = 0;
+				for (int q = 0; q < QUERY_COUNT; q++) {
+					if (index.find(xs[q], ys[q]) != null)
+						indexHits++;
+				}
+				indexNanos = System.nanoTime() - start;
+			}
+			if (scanHits != indexHits)
+				LOGGER.severe("The index found " + indexHits + " dots where the scan found " + scanHits + ".");
+			LOGGER.info(String.format("%d dots: linear scan %.0f queries/s, index %.0f queries/s (%.0fx).", DOT_COUNTS[d], QUERY_COUNT * 1e9
+					/ scanNanos, QUERY_COUNT * 1e9 / indexNanos, (double) scanNanos / indexNanos));
+
+			// Moving every dot once, as an animated scene would each frame.
+			long start = System.nanoTime();
+			for (int i = 0; i < dots.size(); i++) {
+				Dot dot = dots.get(i);
+				index.move(dot, dot.getCenter().x + random.nextFloat() * 4 - 2, dot.getCenter().y + random.nextFloat() * 4 - 2);
+			}
+			LOGGER.info(String.format("%d dots: moving all of them took %.2f ms.", DOT_COUNTS[d], (System.nanoTime() - start) / 1000000f));
+		}
+	}
+
+	/**
+	 * @return The dot containing the point whose center is nearest to it, found the way a sketch without an index would.
+	 */
+	private static Dot scan(List<Dot> dots, float x, float y) {
+		Dot nearest = null;
+		double nearestDist = Double.MAX_VALUE;
+		for (int i = 0; i < dots.size(); i++) {
+			Dot dot = dots.get(i);
+			if (dot.containsPoint(x, y)) {
+				double dist = dot.getCenter().distanceSq(x, y);
+				if (dist < nearestDist) {
+					nearest = dot;
+					nearestDist = dist;
+				}
+			}
+		}
+		return nearest;
+	}
+}
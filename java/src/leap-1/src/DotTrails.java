@@ -1,4 +1,3 @@
-import com.leapmotion.leap.*;
 import processing.core.PApplet;
 
 import java.util.logging.ConsoleHandler;
@@ -15,10 +14,19 @@ public class DotTrails extends PApplet {
 	private final static Logger LOGGER = Logger.getLogger("DotTrailsLogger");
 	private final static int WINDOW_WIDTH = 1000;
 	private final static int WINDOW_HEIGHT = 600;
+	private final static float TARGET_FPS = 30;
+	// In dots, one per frame.
+	private final static int[] TRAIL_LENGTHS = { 1000, 5000, 20000 };
+	private final static int[] TRAIL_RGB = new int[] { 255, 0, 0 };
 
-	private static Controller controller;
+	private static FrameSource frameSource;
+	// Draw the pointer where it will be when the frame is on screen, not where it was when the device saw it.
+	private static PointerPredictor predictor = new PointerPredictor();
+	private static FrameSnapshot predicted = new FrameSnapshot();
 	private static float centerX;
 	private static float centerY;
+	private static TrailBuffer trail;
+	private static FrameGovernor governor = new FrameGovernor(TARGET_FPS);
 
 	// private static float radius;
 
@@ -41,13 +49,27 @@ public class DotTrails extends PApplet {
 		
 		// FIXME: Load background image.
 		
+		trail = new TrailBuffer(this, width, height, TRAIL_LENGTHS[TRAIL_LENGTHS.length - 1]);
+		// Let the governor shorten the trail to hold the frame rate: a shorter trail covers less of the window, so fading it is cheaper.
+		governor.addKnob(new FrameGovernor.Knob() {
+			@Override
+			public int getLevelCount() {
+				return TRAIL_LENGTHS.length;
+			}
+
+			@Override
+			public void setLevel(int level) {
+				trail.setLength(TRAIL_LENGTHS[level]);
+			}
+		});
+		governor.register(this);
 
 		// Setup logging.
 		LOGGER.setLevel(java.util.logging.Level.INFO);
 		LOGGER.addHandler(new ConsoleHandler());
 
 		try {
-			controller = new Controller();
+			frameSource = LeapMotionUtil.openFrameSource();
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -59,34 +81,64 @@ public class DotTrails extends PApplet {
 	}
 
 	public void draw() {
-		if (controller.isConnected()) {
-			Frame frame = controller.frame();
-			LOGGER.fine("FPS: " + frame.currentFramesPerSecond());
-			//background(0, 0, 0);
+		// The trail is redrawn from its layer every frame, so the background can be cleared.
+		background(0, 0, 0);
+		if (frameSource.isConnected()) {
+			FrameSnapshot newFrame;
+			while ((newFrame = frameSource.nextFrame()) != null)
+				predictor.update(newFrame);
+			FrameSnapshot frame = frameSource.frame();
+			predictor.update(frame);
+			predictor.predict(frame, predicted);
+			frame = predicted;
+			LOGGER.fine("FPS: " + frame.getFramesPerSecond());
 			// HACK: The background() function in Processing has a bug, so set as full-size background image.
 			// FIXME: image(currentBackgroundImage, 0, 0);
 
-			Pointable foremost = frame.pointables().frontmost();
-			if (foremost.isValid()) {
+			int foremost = frame.frontmost();
+			if (foremost >= 0) {
 				float projectionMultiplier = 1f;
 				float xyMultiplier = 1000f;
 				float radiusMultiplier = 1f;
-				Vector direction = foremost.direction();
-				Vector projectedDirection = direction.times(projectionMultiplier);
+				float projectedX = frame.getDirectionX(foremost) * projectionMultiplier;
+				float projectedY = frame.getDirectionY(foremost) * projectionMultiplier;
 
 				// Center x axis around center of window.
-				float x = centerX + projectedDirection.getX() * xyMultiplier;
+				float x = centerX + projectedX * xyMultiplier;
 				// Center y axis around center of window. Negative since
 				// coordinate system is different.
-				float y = centerY - projectedDirection.getY() * xyMultiplier;
+				float y = centerY - projectedY * xyMultiplier;
 				// Radius is based on how close the pointer is, with closer values being more negative. Note the lower cap on radius.
 				float radiusMin = 50f;
-				float z = foremost.tipPosition().getZ();
+				float z = frame.getTipZ(foremost);
 				float radius = z < radiusMin ? radiusMin : -z * radiusMultiplier;
 
+				trail.add(x, y, radius, TRAIL_RGB);
+				trail.update();
+				image(trail.getImage(), 0, 0);
 				// Draw circle.
-				ShapeUtil.drawCircle(this, x, y, radius, new int[] { 255, 0, 0 });
+				ShapeUtil.drawCircle(this, x, y, radius, TRAIL_RGB);
+			} else {
+				// The trail only fades as dots are added, so it holds still until the pointer comes back.
+				image(trail.getImage(), 0, 0);
 			}
 		}
 	}
+
+	private void cleanup() {
+		if (frameSource != null)
+			frameSource.close();
+		LOGGER.info(String.format("Pointer prediction error: mean %.1f mm, max %.1f mm (%.1f mm without prediction) over %d predictions.",
+				predictor.getMeanError(), predictor.getMaxError(), predictor.getMeanRawError(), predictor.getErrorCount()));
+	}
+
+	public void stop() {
+		cleanup();
+		super.stop();
+	}
+
+	public void exit() {
+		cleanup();
+		super.exit();
+	}
 }
@@ -1,5 +1,3 @@
-import com.leapmotion.*;
-import com.leapmotion.leap.*;
 import processing.core.PApplet;
 
 import java.util.logging.ConsoleHandler;
@@ -16,7 +14,7 @@ public class FingerCount extends PApplet {
 	private final static Logger LOGGER = Logger
 			.getLogger("FingerCountLogger");
 
-	private static Controller controller;
+	private static FrameSource frameSource;
 	private static float centerX;
 	private static float centerY;
 	//private static float radius;
@@ -43,7 +41,7 @@ public class FingerCount extends PApplet {
 		LOGGER.addHandler(new ConsoleHandler());
 
 		try {
-			controller = new Controller();
+			frameSource = LeapMotionUtil.openFrameSource();
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: "
 					+ ex.getClass().toString()
@@ -63,10 +61,10 @@ public class FingerCount extends PApplet {
 	}
 
 	public void draw() {
-		if (controller.isConnected()) {
-			Frame frame = controller.frame();
-			LOGGER.info("FPS: " + frame.currentFramesPerSecond());
-			int numFingers = frame.fingers().count();
+		if (frameSource.isConnected()) {
+			FrameSnapshot frame = frameSource.frame();
+			LOGGER.info("FPS: " + frame.getFramesPerSecond());
+			int numFingers = frame.getFingerCount();
 			LOGGER.info("Num fingers: " + numFingers);
 			float x = centerX;
 			float y = centerY;
@@ -75,11 +73,26 @@ public class FingerCount extends PApplet {
 			//ShapeUtil.drawCircle(this, x, y, radius, fill, stroke, strokeWeight, alpha)
 			ShapeUtil.drawCircle(this, x, y, radius, new int[] { 255, 0, 0 } );
 			
-			LOGGER.info("FPS: " + frame.currentFramesPerSecond());
-			LOGGER.info("Num fingers: " + frame.fingers().count());
+			LOGGER.info("FPS: " + frame.getFramesPerSecond());
+			LOGGER.info("Num fingers: " + frame.getFingerCount());
 			//GestureList gestures = frame.gestures();
 			//if (gestures.count() > 0)
 			//	LOGGER.info("Num gestures: " + gestures.count());
 		}
 	}
+
+	private void cleanup() {
+		if (frameSource != null)
+			frameSource.close();
+	}
+
+	public void stop() {
+		cleanup();
+		super.stop();
+	}
+
+	public void exit() {
+		cleanup();
+		super.exit();
+	}
 }
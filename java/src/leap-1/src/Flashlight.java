@@ -1,10 +1,7 @@
-import com.leapmotion.leap.*;
 import processing.core.PApplet;
-import processing.core.PGraphics;
 import processing.core.PImage;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Logger;
 
@@ -12,13 +9,18 @@ import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import util.*;
+
 public class Flashlight extends PApplet {
 	// Logging:
 	private final static Logger LOGGER = Logger.getLogger("FlashlightLogger");
 	private final static int WINDOW_WIDTH = 1000;
 	private final static int WINDOW_HEIGHT = 667;
 
-	private static Controller controller;
+	private static FrameSource frameSource;
+	// Remove jitter from the pointer.
+	private static OneEuroFilter filter = new OneEuroFilter();
+	private static FrameSnapshot filtered = new FrameSnapshot();
 	private static float centerX;
 	private static float centerY;
 	private static float projectionMultiplier = 1f;
@@ -27,9 +29,9 @@ public class Flashlight extends PApplet {
 	private static float radiusMin = 5f;
 	private static PImage bgImage;
 	private static PImage maskImage;
-	private static PGraphics pg;
+	// The mask image with the dots revealing the background image through it.
+	private static ScratchMask scratchMask;
 	private static boolean persistDots = false;
-	private static ArrayList<float[]> dots = new ArrayList<float[]>();
 	private static String assetPath = System.getProperty("user.dir") + File.separator + "assets" + File.separator;
 	private static String bgImagePath = assetPath + "bg_image.jpg";
 	private static String maskImagePath = assetPath + "mask_image.jpg";
@@ -50,7 +52,6 @@ public class Flashlight extends PApplet {
 		// Set up PApplet.
 		centerX = width / 2;
 		centerY = height / 2;
-		pg = createGraphics(width, height/* , P2D */);
 
 		// Setup logging.
 		LOGGER.setLevel(java.util.logging.Level.INFO);
@@ -58,7 +59,7 @@ public class Flashlight extends PApplet {
 
 		try {
 			// Disable window resizing.
-			findFrame().setResizable(false);
+			ShapeUtil.setResizable(this, false);
 
 			// Load background and mask images, and resize them to the size of the window.
 			int imgBorderHack = 0;
@@ -70,9 +71,21 @@ public class Flashlight extends PApplet {
 			if (maskImage == null)
 				throw new Exception("In setup(), the PImage for maskImage was null for some reason");
 			maskImage.resize(width + imgBorderHack, height + imgBorderHack);
+			scratchMask = new ScratchMask(this, maskImage, bgImage);
+			scratchMask.setListener(new ScratchMask.Listener() {
+				@Override
+				public void regionRevealed(int regionX, int regionY) {
+					LOGGER.fine("Region revealed: (" + regionX + ", " + regionY + ")");
+				}
+
+				@Override
+				public void revealed() {
+					LOGGER.info("Ticket revealed: " + Math.round(scratchMask.getRevealedFraction() * 100) + "% of the image uncovered.");
+				}
+			});
 
-			// Instantiate the Leap Motion controller.
-			controller = new Controller();
+			// Open the Leap Motion frame source.
+			frameSource = LeapMotionUtil.openFrameSource();
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -90,8 +103,8 @@ public class Flashlight extends PApplet {
 		switch (key) {
 		case ('p'):
 			if (persistDots) {
-				// Turn off persistence and reset dot array.
-				dots.clear();
+				// Turn off persistence and cover up the saved dots.
+				scratchMask.clear();
 				persistDots = false;
 			} else {
 				persistDots = true;
@@ -101,60 +114,52 @@ public class Flashlight extends PApplet {
 	}
 
 	public void draw() {
-		if (controller.isConnected()) {
-			Frame frame = controller.frame();
-			LOGGER.fine("FPS: " + frame.currentFramesPerSecond());
-
-			// Draw the mask image.
-			image(maskImage, 0, 0);
-
-			Pointable foremost = frame.pointables().frontmost();
-			if (foremost.isValid()) {
-				Vector direction = foremost.direction();
-				Vector projectedDirection = direction.times(projectionMultiplier);
+		if (frameSource.isConnected()) {
+			FrameSnapshot newFrame;
+			while ((newFrame = frameSource.nextFrame()) != null)
+				filter.filter(newFrame, filtered);
+			filter.filter(frameSource.frame(), filtered);
+			FrameSnapshot frame = filtered;
+			LOGGER.fine("FPS: " + frame.getFramesPerSecond());
+
+			int foremost = frame.frontmost();
+			if (foremost >= 0) {
+				float projectedX = frame.getDirectionX(foremost) * projectionMultiplier;
+				float projectedY = frame.getDirectionY(foremost) * projectionMultiplier;
 
 				// Center x axis around center of window.
-				float x = centerX + projectedDirection.getX() * xyMultiplier;
+				float x = centerX + projectedX * xyMultiplier;
 				// Center y axis around center of window. Negative since
 				// coordinate system is different.
-				float y = centerY - projectedDirection.getY() * xyMultiplier;
+				float y = centerY - projectedY * xyMultiplier;
 				// Radius is based on how close the pointer is, with closer values being more negative. Note the lower cap on radius.
-				float z = foremost.tipPosition().getZ();
+				float z = frame.getTipZ(foremost);
 				float radius = z < radiusMin ? radiusMin : -z * radiusMultiplier;
 
-				/*
-				 * Source: http://forum.processing.org/topic/image-behind-image
-				 */
-				pg.beginDraw();
-				pg.background(0, 0);
-				pg.noStroke();
-				pg.fill(255);
-				if (persistDots) {
-					dots.add(new float[] { x, y, radius * 2 });
-					for (final float[] dot : dots)
-						pg.ellipse(dot[0], dot[1], dot[2], dot[2]);
-				} else {
-					pg.ellipse(x, y, radius * 2, radius * 2);
-				}
-				pg.endDraw();
-				bgImage.mask(pg);
-				image(bgImage, 0, 0);
+				// Only the new dot is stamped into the mask, so this costs the same however long the dots have been persisted.
+				if (!persistDots)
+					scratchMask.clear();
+				scratchMask.stamp(x, y, radius);
 			} else {
 				// Reset the saved dots.
-				dots.clear();
+				scratchMask.clear();
 			}
+			image(scratchMask.getImage(), 0, 0);
 		}
 	}
 
-	/**
-	 * Get the current frame. (A hack for Eclipse from https://forum.processing.org/topic/trying-to-use-processing-in-eclipse).
-	 * 
-	 * @return
-	 */
-	private java.awt.Frame findFrame() {
-		java.awt.Container f = this.getParent();
-		while (!(f instanceof java.awt.Frame) && f != null)
-			f = f.getParent();
-		return (java.awt.Frame) f;
+	private void cleanup() {
+		if (frameSource != null)
+			frameSource.close();
+	}
+
+	public void stop() {
+		cleanup();
+		super.stop();
+	}
+
+	public void exit() {
+		cleanup();
+		super.exit();
 	}
 }
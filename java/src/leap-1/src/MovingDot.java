@@ -1,5 +1,3 @@
-import com.leapmotion.*;
-import com.leapmotion.leap.*;
 import processing.core.PApplet;
 
 import java.util.logging.ConsoleHandler;
@@ -15,7 +13,12 @@ public class MovingDot extends PApplet {
 	// Logging:
 	private final static Logger LOGGER = Logger.getLogger("MovingDotLogger");
 
-	private static Controller controller;
+	private static FrameSource frameSource;
+	// Remove jitter from the pointer, then draw it where it will be when the frame is on screen, not where it was when the device saw it.
+	private static OneEuroFilter filter = new OneEuroFilter();
+	private static FrameSnapshot filtered = new FrameSnapshot();
+	private static PointerPredictor predictor = new PointerPredictor();
+	private static FrameSnapshot predicted = new FrameSnapshot();
 	private static float centerX;
 	private static float centerY;
 
@@ -43,7 +46,7 @@ public class MovingDot extends PApplet {
 		LOGGER.addHandler(new ConsoleHandler());
 
 		try {
-			controller = new Controller();
+			frameSource = LeapMotionUtil.openFrameSource();
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -55,27 +58,35 @@ public class MovingDot extends PApplet {
 	}
 
 	public void draw() {
-		if (controller.isConnected()) {
-			Frame frame = controller.frame();
-			LOGGER.fine("FPS: " + frame.currentFramesPerSecond());
+		if (frameSource.isConnected()) {
+			FrameSnapshot newFrame;
+			while ((newFrame = frameSource.nextFrame()) != null) {
+				filter.filter(newFrame, filtered);
+				predictor.update(filtered);
+			}
+			filter.filter(frameSource.frame(), filtered);
+			predictor.update(filtered);
+			predictor.predict(filtered, predicted);
+			FrameSnapshot frame = predicted;
+			LOGGER.fine("FPS: " + frame.getFramesPerSecond());
 			background(0, 0, 0);
 
-			Pointable foremost = frame.pointables().frontmost();
-			if (foremost.isValid()) {
+			int foremost = frame.frontmost();
+			if (foremost >= 0) {
 				float projectionMultiplier = 1f;
 				float xyMultiplier = 1000f;
 				float radiusMultiplier = 1f;
-				Vector direction = foremost.direction();
-				Vector projectedDirection = direction.times(projectionMultiplier);
+				float projectedX = frame.getDirectionX(foremost) * projectionMultiplier;
+				float projectedY = frame.getDirectionY(foremost) * projectionMultiplier;
 
 				// Center x axis around center of window.
-				float x = centerX + projectedDirection.getX() * xyMultiplier;
+				float x = centerX + projectedX * xyMultiplier;
 				// Center y axis around center of window. Negative since
 				// coordinate system is different.
-				float y = centerY - projectedDirection.getY() * xyMultiplier;
+				float y = centerY - projectedY * xyMultiplier;
 				// Radius is based on how close the pointer is, with closer values being more negative. Note the lower cap on radius.
 				float radiusMin = 50f;
-				float z = foremost.tipPosition().getZ();
+				float z = frame.getTipZ(foremost);
 				float radius = z < radiusMin ? radiusMin : -z * radiusMultiplier;
 
 				// Draw circle.
@@ -83,4 +94,21 @@ public class MovingDot extends PApplet {
 			}
 		}
 	}
+
+	private void cleanup() {
+		if (frameSource != null)
+			frameSource.close();
+		LOGGER.info(String.format("Pointer prediction error: mean %.1f mm, max %.1f mm (%.1f mm without prediction) over %d predictions.",
+				predictor.getMeanError(), predictor.getMaxError(), predictor.getMeanRawError(), predictor.getErrorCount()));
+	}
+
+	public void stop() {
+		cleanup();
+		super.stop();
+	}
+
+	public void exit() {
+		cleanup();
+		super.exit();
+	}
 }
@@ -95,10 +95,12 @@ public class Dot {
 	 * @return
 	 */
 	public boolean containsPoint(Point2D.Float point) {
-		if (Math.pow(point.x - center.x, 2) + Math.pow(point.y - center.y, 2) <= Math.pow(radius, 2)) {
-			return true;
-		} else {
-			return false;
-		}
+		return containsPoint(point.x, point.y);
+	}
+
+	public boolean containsPoint(float x, float y) {
+		float dx = x - center.x;
+		float dy = y - center.y;
+		return dx * dx + dy * dy <= radius * radius;
 	}
 }
@@ -0,0 +1,182 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A uniform grid over Dots, to find the dots under a point without testing every dot.
+ *
+ * Each dot is kept in the cell of its center. A query looks in the cells within its radius plus the largest dot radius seen, and tests only
+ * the dots in them, so with a cell size around the size of the dots a query tests a handful of dots however many there are. Dots outside
+ * the bounds are kept in the nearest edge cell, which stays correct but gets slow if many dots are far outside.
+ *
+ * The index files a dot by its center, so move dots with move() rather than changing their centers directly. Changing a dot's radius is
+ * fine as long as it is re-inserted, or moved, afterwards.
+ */
+public class DotIndex {
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+	private final List<List<Dot>> cells;
+	private int size = 0;
+	// Never shrinks, so queries may look in a few more cells than needed after the largest dots are removed.
+	private float maxRadius = 0;
+
+	/**
+	 * @param width
+	 * @param height
+	 * @param cellSize
+	 *            About the diameter of a typical dot works well.
+	 * @throws IllegalArgumentException
+	 */
+	public DotIndex(float width, float height, float cellSize) throws IllegalArgumentException {
+		if (width <= 0 || height <= 0 || cellSize <= 0)
+			throw new IllegalArgumentException("Invalid index parameters. Given: width=" + width + ", height=" + height + ", cellSize=" + cellSize);
+		this.cellSize = cellSize;
+		columns = (int) Math.ceil(width / cellSize);
+		rows = (int) Math.ceil(height / cellSize);
+		cells = new ArrayList<List<Dot>>(columns * rows);
+		for (int i = 0; i < columns * rows; i++)
+			cells.add(new ArrayList<Dot>());
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void insert(Dot dot) {
+		cells.get(cell(dot.getCenter().x, dot.getCenter().y)).add(dot);
+		maxRadius = Math.max(maxRadius, dot.getRadius());
+		size++;
+	}
+
+	/**
+	 * @param dot
+	 * @return Whether the dot was in the index.
+	 */
+	public boolean remove(Dot dot) {
+		if (!removeFromCell(dot, cell(dot.getCenter().x, dot.getCenter().y)))
+			return false;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Move a dot, in the index and in itself.
+	 *
+	 * @param dot
+	 *            A dot in the index.
+	 * @param x
+	 * @param y
+	 * @throws IllegalArgumentException
+	 */
+	public void move(Dot dot, float x, float y) throws IllegalArgumentException {
+		int from = cell(dot.getCenter().x, dot.getCenter().y);
+		int to = cell(x, y);
+		if (from != to) {
+			if (!removeFromCell(dot, from))
+				throw new IllegalArgumentException("The dot is not in the index.");
+			cells.get(to).add(dot);
+		}
+		dot.getCenter().setLocation(x, y);
+	}
+
+	public void clear() {
+		for (int i = 0; i < cells.size(); i++)
+			cells.get(i).clear();
+		size = 0;
+		maxRadius = 0;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return The dot containing the point whose center is nearest to it, or null if no dot contains it.
+	 */
+	public Dot find(float x, float y) {
+		Dot nearest = null;
+		float nearestDistSq = Float.MAX_VALUE;
+		int column0 = column(x - maxRadius), column1 = column(x + maxRadius);
+		int row0 = row(y - maxRadius), row1 = row(y + maxRadius);
+		for (int row = row0; row <= row1; row++) {
+			for (int column = column0; column <= column1; column++) {
+				List<Dot> cell = cells.get(row * columns + column);
+				for (int i = 0; i < cell.size(); i++) {
+					Dot dot = cell.get(i);
+					float dx = x - dot.getCenter().x;
+					float dy = y - dot.getCenter().y;
+					float distSq = dx * dx + dy * dy;
+					if (distSq <= dot.getRadius() * dot.getRadius() && distSq < nearestDistSq) {
+						nearest = dot;
+						nearestDistSq = distSq;
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Find the dots that overlap a circle, e.g. a fingertip.
+	 *
+	 * @param x
+	 * @param y
+	 * @param radius
+	 *            0 for the dots containing the point.
+	 * @param result
+	 *            The dots found are added to it, in no particular order.
+	 * @return The number of dots found.
+	 */
+	public int findAll(float x, float y, float radius, List<Dot> result) {
+		int found = 0;
+		float reach = radius + maxRadius;
+		int column0 = column(x - reach), column1 = column(x + reach);
+		int row0 = row(y - reach), row1 = row(y + reach);
+		for (int row = row0; row <= row1; row++) {
+			for (int column = column0; column <= column1; column++) {
+				List<Dot> cell = cells.get(row * columns + column);
+				for (int i = 0; i < cell.size(); i++) {
+					Dot dot = cell.get(i);
+					float dx = x - dot.getCenter().x;
+					float dy = y - dot.getCenter().y;
+					float touch = radius + dot.getRadius();
+					if (dx * dx + dy * dy <= touch * touch) {
+						result.add(dot);
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Remove a dot from a cell by moving the last dot of the cell into its place.
+	 */
+	private boolean removeFromCell(Dot dot, int index) {
+		List<Dot> cell = cells.get(index);
+		for (int i = 0; i < cell.size(); i++) {
+			if (cell.get(i) == dot) {
+				Dot last = cell.remove(cell.size() - 1);
+				if (i < cell.size())
+					cell.set(i, last);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int cell(float x, float y) {
+		return row(y) * columns + column(x);
+	}
+
+	private int column(float x) {
+		int column = (int) Math.floor(x / cellSize);
+		return column < 0 ? 0 : column >= columns ? columns - 1 : column;
+	}
+
+	private int row(float y) {
+		int row = (int) Math.floor(y / cellSize);
+		return row < 0 ? 0 : row >= rows ? rows - 1 : row;
+	}
+}
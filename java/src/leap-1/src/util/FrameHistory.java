@@ -0,0 +1,202 @@
+package util;
+
+/**
+ * A fixed-capacity history of recent frames, kept as preallocated FrameSnapshots so that looking back in time does not go through the Leap Motion
+ * SDK. Frames are looked up by age in constant time, or by device timestamp. Positions can be interpolated between frames, and velocity and
+ * acceleration of a pointable are worked out by finite differences over the device timestamps, so they do not depend on the sketch frame rate.
+ *
+ * Add every frame from FrameSource.nextFrame() to get the full device rate.
+ */
+public class FrameHistory {
+	private static final float MICROS_PER_SECOND = 1000000f;
+
+	private final FrameSnapshot[] frames;
+	// Index of the newest frame.
+	private int newest = -1;
+	private int size = 0;
+
+	/**
+	 * @param capacity
+	 *            The number of frames to keep.
+	 * @throws IllegalArgumentException
+	 */
+	public FrameHistory(int capacity) throws IllegalArgumentException {
+		if (capacity < 2)
+			throw new IllegalArgumentException("Capacity must be at least 2. Given: " + capacity);
+		frames = new FrameSnapshot[capacity];
+		for (int i = 0; i < capacity; i++)
+			frames[i] = new FrameSnapshot();
+	}
+
+	public int getCapacity() {
+		return frames.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		newest = -1;
+		size = 0;
+	}
+
+	/**
+	 * Copy a frame into the history, replacing the oldest frame when full. A frame with the same id as the newest one is ignored, so the latest
+	 * frame can be added every draw even if it was already added while draining nextFrame().
+	 *
+	 * @param frame
+	 */
+	public void add(FrameSnapshot frame) {
+		if (size > 0 && frames[newest].getId() == frame.getId())
+			return;
+		newest = (newest + 1) % frames.length;
+		frames[newest].copyFrom(frame);
+		if (size < frames.length)
+			size++;
+	}
+
+	/**
+	 * Get a frame by age, where 0 is the newest frame, 1 is the one before it, etc.
+	 *
+	 * @param age
+	 * @return The frame, or null if the history does not go back that far. Do not modify it.
+	 */
+	public FrameSnapshot get(int age) {
+		if (age < 0 || age >= size)
+			return null;
+		return frames[index(age)];
+	}
+
+	/**
+	 * Find the newest frame at or before a device timestamp.
+	 *
+	 * @param timestamp
+	 *            In microseconds.
+	 * @return The age of the frame, or -1 if the timestamp is before the oldest frame.
+	 */
+	public int findAge(long timestamp) {
+		// Timestamps decrease with age, so search for the smallest age with a timestamp <= the one given.
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (frames[index(mid)].getTimestamp() <= timestamp)
+				high = mid;
+			else
+				low = mid + 1;
+		}
+		return low < size ? low : -1;
+	}
+
+	/**
+	 * Get the tip position of a pointable at a device timestamp, interpolating linearly between the frames either side of it. Timestamps after
+	 * the newest frame give the newest position.
+	 *
+	 * @param pointableId
+	 * @param timestamp
+	 *            In microseconds.
+	 * @param out
+	 *            Receives x, y, z.
+	 * @return False if the pointable is not in the frames needed.
+	 */
+	public boolean getPosition(int pointableId, long timestamp, float[] out) {
+		int age = findAge(timestamp);
+		if (age < 0)
+			return false;
+		FrameSnapshot before = frames[index(age)];
+		int b = before.findPointable(pointableId);
+		if (b < 0)
+			return false;
+		if (age == 0 || before.getTimestamp() == timestamp) {
+			out[0] = before.getTipX(b);
+			out[1] = before.getTipY(b);
+			out[2] = before.getTipZ(b);
+			return true;
+		}
+
+		FrameSnapshot after = frames[index(age - 1)];
+		int a = after.findPointable(pointableId);
+		if (a < 0)
+			return false;
+		float t = (float) (timestamp - before.getTimestamp()) / (after.getTimestamp() - before.getTimestamp());
+		out[0] = before.getTipX(b) + (after.getTipX(a) - before.getTipX(b)) * t;
+		out[1] = before.getTipY(b) + (after.getTipY(a) - before.getTipY(b)) * t;
+		out[2] = before.getTipZ(b) + (after.getTipZ(a) - before.getTipZ(b)) * t;
+		return true;
+	}
+
+	/**
+	 * Get the velocity of a pointable from the newest two frames it is in.
+	 *
+	 * @param pointableId
+	 * @param out
+	 *            Receives x, y, z in millimeters per second.
+	 * @return False if the pointable is not in the newest frame or has no earlier frame to compare with.
+	 */
+	public boolean getVelocity(int pointableId, float[] out) {
+		int age0 = 0;
+		int age1 = previousAge(pointableId, age0);
+		if (age1 < 0 || frames[index(age0)].findPointable(pointableId) < 0)
+			return false;
+		velocity(pointableId, age0, age1, out);
+		return true;
+	}
+
+	/**
+	 * Get the acceleration of a pointable from the newest three frames it is in.
+	 *
+	 * @param pointableId
+	 * @param out
+	 *            Receives x, y, z in millimeters per second squared.
+	 * @return False if the pointable is not in the newest frame or has fewer than two earlier frames to compare with.
+	 */
+	public boolean getAcceleration(int pointableId, float[] out) {
+		int age0 = 0;
+		int age1 = previousAge(pointableId, age0);
+		int age2 = age1 < 0 ? -1 : previousAge(pointableId, age1);
+		if (age2 < 0 || frames[index(age0)].findPointable(pointableId) < 0)
+			return false;
+
+		velocity(pointableId, age0, age1, out);
+		float v1x = out[0];
+		float v1y = out[1];
+		float v1z = out[2];
+		velocity(pointableId, age1, age2, out);
+		// The two velocities are centered on the midpoints of their intervals.
+		float dt = (frames[index(age0)].getTimestamp() - frames[index(age2)].getTimestamp()) / (2 * MICROS_PER_SECOND);
+		out[0] = (v1x - out[0]) / dt;
+		out[1] = (v1y - out[1]) / dt;
+		out[2] = (v1z - out[2]) / dt;
+		return true;
+	}
+
+	/**
+	 * @return The age of the next older frame than the given one that contains the pointable and has a different timestamp, or -1.
+	 */
+	private int previousAge(int pointableId, int age) {
+		long timestamp = frames[index(age)].getTimestamp();
+		for (int i = age + 1; i < size; i++) {
+			FrameSnapshot frame = frames[index(i)];
+			if (frame.getTimestamp() < timestamp && frame.findPointable(pointableId) >= 0)
+				return i;
+		}
+		return -1;
+	}
+
+	private void velocity(int pointableId, int newerAge, int olderAge, float[] out) {
+		FrameSnapshot newer = frames[index(newerAge)];
+		FrameSnapshot older = frames[index(olderAge)];
+		int n = newer.findPointable(pointableId);
+		int o = older.findPointable(pointableId);
+		float dt = (newer.getTimestamp() - older.getTimestamp()) / MICROS_PER_SECOND;
+		out[0] = (newer.getTipX(n) - older.getTipX(o)) / dt;
+		out[1] = (newer.getTipY(n) - older.getTipY(o)) / dt;
+		out[2] = (newer.getTipZ(n) - older.getTipZ(o)) / dt;
+	}
+
+	private int index(int age) {
+		int i = newest - age;
+		return i < 0 ? i + frames.length : i;
+	}
+}
@@ -0,0 +1,202 @@
+package util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a frame recording file, shared by FrameRecorder and FrameRecording.
+ *
+ * The file is a fixed-size header followed by chunks of CHUNK_FRAMES frames. Within a chunk the data is stored by column (all frame ids, then
+ * all timestamps, etc.) and every frame has the same width, so the position of any field of any frame can be calculated directly from the frame
+ * index.
+ */
+final class FrameRecordingFormat {
+	static final int MAGIC = 0x4C454150; // "LEAP"
+	static final int VERSION = 2;
+	static final int CHUNK_FRAMES = 1024;
+
+	// Header layout.
+	static final int HEADER_BYTES = 64;
+	static final int HEADER_MAGIC = 0;
+	static final int HEADER_VERSION = 4;
+	static final int HEADER_CHUNK_FRAMES = 8;
+	static final int HEADER_FRAME_COUNT = 12;
+
+	// Columns.
+	static final int COL_ID = 0;
+	static final int COL_TIMESTAMP = 1;
+	static final int COL_FPS = 2;
+	static final int COL_BOX = 3;
+	static final int COL_HAND_COUNT = 4;
+	static final int COL_HAND_ID = 5;
+	static final int COL_PALM = 6;
+	static final int COL_POINTABLE_COUNT = 7;
+	static final int COL_POINTABLE_ID = 8;
+	static final int COL_POINTABLE_HAND = 9;
+	static final int COL_POINTABLE_TOOL = 10;
+	static final int COL_TIP = 11;
+	static final int COL_DIRECTION = 12;
+	static final int COL_GESTURE_COUNT = 13;
+	static final int COL_GESTURE_ID = 14;
+	static final int COL_GESTURE_TYPE = 15;
+	static final int COL_GESTURE_STATE = 16;
+	static final int COL_GESTURE_POINTABLE = 17;
+	static final int COL_GESTURE_PROGRESS = 18;
+	static final int COL_GESTURE_CLOCKWISE = 19;
+	static final int COL_GESTURE_POSITION = 20;
+	static final int COL_GESTURE_DIRECTION = 21;
+
+	// Bytes per frame for each column.
+	private static final int[] COLUMN_WIDTHS = new int[] { 8, 8, 4, 6 * 4, 4, FrameSnapshot.MAX_HANDS * 4, FrameSnapshot.MAX_HANDS * 3 * 4, 4,
+			FrameSnapshot.MAX_POINTABLES * 4, FrameSnapshot.MAX_POINTABLES * 4, FrameSnapshot.MAX_POINTABLES, FrameSnapshot.MAX_POINTABLES * 3 * 4,
+			FrameSnapshot.MAX_POINTABLES * 3 * 4, 4, FrameSnapshot.MAX_GESTURES * 4, FrameSnapshot.MAX_GESTURES * 4, FrameSnapshot.MAX_GESTURES * 4,
+			FrameSnapshot.MAX_GESTURES * 4, FrameSnapshot.MAX_GESTURES * 4, FrameSnapshot.MAX_GESTURES, FrameSnapshot.MAX_GESTURES * 3 * 4,
+			FrameSnapshot.MAX_GESTURES * 3 * 4 };
+
+	// Offset of each column within a chunk.
+	private static final int[] COLUMN_OFFSETS = new int[COLUMN_WIDTHS.length];
+	static final int CHUNK_BYTES;
+
+	static {
+		int offset = 0;
+		for (int i = 0; i < COLUMN_WIDTHS.length; i++) {
+			COLUMN_OFFSETS[i] = offset;
+			offset += COLUMN_WIDTHS[i] * CHUNK_FRAMES;
+		}
+		CHUNK_BYTES = offset;
+	}
+
+	// Make ctor private so you can only use this class statically.
+	private FrameRecordingFormat() {
+
+	}
+
+	/**
+	 * @return The byte offset of the given column for a frame slot within a chunk.
+	 */
+	static int offset(int column, int slot) {
+		return COLUMN_OFFSETS[column] + COLUMN_WIDTHS[column] * slot;
+	}
+
+	/**
+	 * @return The file position of the given chunk.
+	 */
+	static long chunkPosition(int chunk) {
+		return HEADER_BYTES + (long) chunk * CHUNK_BYTES;
+	}
+
+	/**
+	 * Write a frame into a chunk at the given slot, using absolute puts only.
+	 */
+	static void write(ByteBuffer chunk, int slot, FrameSnapshot frame) {
+		chunk.putLong(offset(COL_ID, slot), frame.getId());
+		chunk.putLong(offset(COL_TIMESTAMP, slot), frame.getTimestamp());
+		chunk.putFloat(offset(COL_FPS, slot), frame.getFramesPerSecond());
+		int box = offset(COL_BOX, slot);
+		chunk.putFloat(box, frame.getBoxCenterX());
+		chunk.putFloat(box + 4, frame.getBoxCenterY());
+		chunk.putFloat(box + 8, frame.getBoxCenterZ());
+		chunk.putFloat(box + 12, frame.getBoxWidth());
+		chunk.putFloat(box + 16, frame.getBoxHeight());
+		chunk.putFloat(box + 20, frame.getBoxDepth());
+
+		int handCount = frame.getHandCount();
+		chunk.putInt(offset(COL_HAND_COUNT, slot), handCount);
+		int handIds = offset(COL_HAND_ID, slot);
+		int palms = offset(COL_PALM, slot);
+		for (int i = 0; i < handCount; i++) {
+			chunk.putInt(handIds + i * 4, frame.getHandId(i));
+			chunk.putFloat(palms + i * 12, frame.getPalmX(i));
+			chunk.putFloat(palms + i * 12 + 4, frame.getPalmY(i));
+			chunk.putFloat(palms + i * 12 + 8, frame.getPalmZ(i));
+		}
+
+		int pointableCount = frame.getPointableCount();
+		chunk.putInt(offset(COL_POINTABLE_COUNT, slot), pointableCount);
+		int pointableIds = offset(COL_POINTABLE_ID, slot);
+		int pointableHands = offset(COL_POINTABLE_HAND, slot);
+		int pointableTools = offset(COL_POINTABLE_TOOL, slot);
+		int tips = offset(COL_TIP, slot);
+		int directions = offset(COL_DIRECTION, slot);
+		for (int i = 0; i < pointableCount; i++) {
+			chunk.putInt(pointableIds + i * 4, frame.getPointableId(i));
+			chunk.putInt(pointableHands + i * 4, frame.getPointableHand(i));
+			chunk.put(pointableTools + i, frame.isTool(i) ? (byte) 1 : (byte) 0);
+			chunk.putFloat(tips + i * 12, frame.getTipX(i));
+			chunk.putFloat(tips + i * 12 + 4, frame.getTipY(i));
+			chunk.putFloat(tips + i * 12 + 8, frame.getTipZ(i));
+			chunk.putFloat(directions + i * 12, frame.getDirectionX(i));
+			chunk.putFloat(directions + i * 12 + 4, frame.getDirectionY(i));
+			chunk.putFloat(directions + i * 12 + 8, frame.getDirectionZ(i));
+		}
+
+		int gestureCount = frame.getGestureCount();
+		chunk.putInt(offset(COL_GESTURE_COUNT, slot), gestureCount);
+		int gestureIds = offset(COL_GESTURE_ID, slot);
+		int gestureTypes = offset(COL_GESTURE_TYPE, slot);
+		int gestureStates = offset(COL_GESTURE_STATE, slot);
+		int gesturePointables = offset(COL_GESTURE_POINTABLE, slot);
+		int gestureProgress = offset(COL_GESTURE_PROGRESS, slot);
+		int gestureClockwise = offset(COL_GESTURE_CLOCKWISE, slot);
+		int gesturePositions = offset(COL_GESTURE_POSITION, slot);
+		int gestureDirections = offset(COL_GESTURE_DIRECTION, slot);
+		for (int i = 0; i < gestureCount; i++) {
+			chunk.putInt(gestureIds + i * 4, frame.getGestureId(i));
+			chunk.putInt(gestureTypes + i * 4, frame.getGestureType(i));
+			chunk.putInt(gestureStates + i * 4, frame.getGestureState(i));
+			chunk.putInt(gesturePointables + i * 4, frame.getGesturePointableId(i));
+			chunk.putFloat(gestureProgress + i * 4, frame.getGestureProgress(i));
+			chunk.put(gestureClockwise + i, frame.isGestureClockwise(i) ? (byte) 1 : (byte) 0);
+			chunk.putFloat(gesturePositions + i * 12, frame.getGestureX(i));
+			chunk.putFloat(gesturePositions + i * 12 + 4, frame.getGestureY(i));
+			chunk.putFloat(gesturePositions + i * 12 + 8, frame.getGestureZ(i));
+			chunk.putFloat(gestureDirections + i * 12, frame.getGestureDirectionX(i));
+			chunk.putFloat(gestureDirections + i * 12 + 4, frame.getGestureDirectionY(i));
+			chunk.putFloat(gestureDirections + i * 12 + 8, frame.getGestureDirectionZ(i));
+		}
+	}
+
+	/**
+	 * Read a frame from a chunk at the given slot into a snapshot, using absolute gets only.
+	 */
+	static void read(ByteBuffer chunk, int slot, FrameSnapshot frame) {
+		frame.reset();
+		frame.setFrame(chunk.getLong(offset(COL_ID, slot)), chunk.getLong(offset(COL_TIMESTAMP, slot)), chunk.getFloat(offset(COL_FPS, slot)));
+		int box = offset(COL_BOX, slot);
+		frame.setInteractionBox(chunk.getFloat(box), chunk.getFloat(box + 4), chunk.getFloat(box + 8), chunk.getFloat(box + 12),
+				chunk.getFloat(box + 16), chunk.getFloat(box + 20));
+
+		int handCount = chunk.getInt(offset(COL_HAND_COUNT, slot));
+		int handIds = offset(COL_HAND_ID, slot);
+		int palms = offset(COL_PALM, slot);
+		for (int i = 0; i < handCount; i++)
+			frame.addHand(chunk.getInt(handIds + i * 4), chunk.getFloat(palms + i * 12), chunk.getFloat(palms + i * 12 + 4),
+					chunk.getFloat(palms + i * 12 + 8));
+
+		int pointableCount = chunk.getInt(offset(COL_POINTABLE_COUNT, slot));
+		int pointableIds = offset(COL_POINTABLE_ID, slot);
+		int pointableHands = offset(COL_POINTABLE_HAND, slot);
+		int pointableTools = offset(COL_POINTABLE_TOOL, slot);
+		int tips = offset(COL_TIP, slot);
+		int directions = offset(COL_DIRECTION, slot);
+		for (int i = 0; i < pointableCount; i++)
+			frame.addPointable(chunk.getInt(pointableIds + i * 4), chunk.getInt(pointableHands + i * 4), chunk.get(pointableTools + i) != 0,
+					chunk.getFloat(tips + i * 12), chunk.getFloat(tips + i * 12 + 4), chunk.getFloat(tips + i * 12 + 8),
+					chunk.getFloat(directions + i * 12), chunk.getFloat(directions + i * 12 + 4), chunk.getFloat(directions + i * 12 + 8));
+
+		int gestureCount = chunk.getInt(offset(COL_GESTURE_COUNT, slot));
+		int gestureIds = offset(COL_GESTURE_ID, slot);
+		int gestureTypes = offset(COL_GESTURE_TYPE, slot);
+		int gestureStates = offset(COL_GESTURE_STATE, slot);
+		int gesturePointables = offset(COL_GESTURE_POINTABLE, slot);
+		int gestureProgress = offset(COL_GESTURE_PROGRESS, slot);
+		int gestureClockwise = offset(COL_GESTURE_CLOCKWISE, slot);
+		int gesturePositions = offset(COL_GESTURE_POSITION, slot);
+		int gestureDirections = offset(COL_GESTURE_DIRECTION, slot);
+		for (int i = 0; i < gestureCount; i++)
+			frame.addGesture(chunk.getInt(gestureIds + i * 4), chunk.getInt(gestureTypes + i * 4), chunk.getInt(gestureStates + i * 4),
+					chunk.getInt(gesturePointables + i * 4), chunk.getFloat(gestureProgress + i * 4), chunk.get(gestureClockwise + i) != 0,
+					chunk.getFloat(gesturePositions + i * 12), chunk.getFloat(gesturePositions + i * 12 + 4),
+					chunk.getFloat(gesturePositions + i * 12 + 8), chunk.getFloat(gestureDirections + i * 12),
+					chunk.getFloat(gestureDirections + i * 12 + 4), chunk.getFloat(gestureDirections + i * 12 + 8));
+	}
+}
@@ -0,0 +1,106 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free single-producer/single-consumer ring of preallocated FrameSnapshots. The producer (the Leap Motion listener thread) claims a slot,
+ * fills it and publishes it; the consumer (the draw() thread) polls frames in order. Neither side blocks or allocates.
+ *
+ * The consumer keeps the most recently polled frame until it polls the next one, so the snapshot it is reading is never overwritten. If the
+ * consumer falls so far behind that the ring is full, new frames are dropped (and counted) rather than blocking the producer.
+ */
+public class FrameRingBuffer {
+	private final FrameSnapshot[] slots;
+	private final int mask;
+	// Number of frames published by the producer.
+	private final AtomicLong published = new AtomicLong(0);
+	// Number of frames polled by the consumer. The last one polled is still in use.
+	private final AtomicLong consumed = new AtomicLong(0);
+	private final AtomicLong dropped = new AtomicLong(0);
+
+	/**
+	 * @param capacity
+	 *            Must be a power of two.
+	 * @throws IllegalArgumentException
+	 */
+	public FrameRingBuffer(int capacity) throws IllegalArgumentException {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("Capacity must be a power of two greater than 1. Given: " + capacity);
+		slots = new FrameSnapshot[capacity];
+		for (int i = 0; i < capacity; i++)
+			slots[i] = new FrameSnapshot();
+		mask = capacity - 1;
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * @return The number of frames dropped because the ring was full.
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return The number of published frames the consumer has not polled yet.
+	 */
+	public int size() {
+		return (int) (published.get() - consumed.get());
+	}
+
+	// Producer side:
+
+	/**
+	 * Claim the next slot to fill. Producer thread only.
+	 *
+	 * @return The slot, or null if the ring is full (the frame should be dropped).
+	 */
+	public FrameSnapshot claim() {
+		long next = published.get();
+		long inUse = consumed.get() - 1;
+		// The slot still held by the consumer (if any) must not be overwritten.
+		if (next - (inUse < 0 ? 0 : inUse) >= slots.length) {
+			dropped.incrementAndGet();
+			return null;
+		}
+		return slots[(int) next & mask];
+	}
+
+	/**
+	 * Make the slot returned by claim() visible to the consumer. Producer thread only.
+	 */
+	public void publish() {
+		published.lazySet(published.get() + 1);
+	}
+
+	// Consumer side:
+
+	/**
+	 * Get the next published frame, releasing the previously polled one. Consumer thread only.
+	 *
+	 * @return The frame, or null if there are no new frames.
+	 */
+	public FrameSnapshot poll() {
+		long next = consumed.get();
+		if (next >= published.get())
+			return null;
+		consumed.lazySet(next + 1);
+		return slots[(int) next & mask];
+	}
+
+	/**
+	 * Skip to the most recently published frame, releasing everything before it. Consumer thread only.
+	 *
+	 * @return The latest frame, or null if nothing has been published yet.
+	 */
+	public FrameSnapshot latest() {
+		long available = published.get();
+		if (available == 0)
+			return null;
+		if (consumed.get() < available)
+			consumed.lazySet(available);
+		return slots[(int) (available - 1) & mask];
+	}
+}
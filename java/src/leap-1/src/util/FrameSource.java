@@ -0,0 +1,50 @@
+package util;
+
+/**
+ * Where the sketches get their Leap Motion frames from. LiveFrameSource reads from the device; ReplayFrameSource plays back a recorded session,
+ * so a sketch can be run and measured without a device attached.
+ */
+public interface FrameSource {
+	/**
+	 * @return True if frames are available (the device is connected, or the recording has frames).
+	 */
+	public boolean isConnected();
+
+	/**
+	 * Get the most recent frame, skipping any frames that have not been handed out by nextFrame(). The source may reuse the returned snapshot,
+	 * so copy it if it is needed after the next call.
+	 *
+	 * @return
+	 */
+	public FrameSnapshot frame();
+
+	/**
+	 * Get the next frame that has not been handed out yet, in the order the device produced them. Draining this until it returns null each
+	 * draw() lets gesture logic see every device frame, not just the one that happened to be current. Call frame() afterwards; replayed sources
+	 * treat it as the end of the draw. The same reuse rules as frame() apply.
+	 *
+	 * @return The frame, or null if there are no new frames.
+	 */
+	public FrameSnapshot nextFrame();
+
+	/**
+	 * Get a frame from the history, where 0 is the most recent frame, 1 is the one before it, etc. Sketches that look back every draw should keep
+	 * a FrameHistory instead, which does not go back to the device.
+	 *
+	 * @param history
+	 * @return The frame, or null if it is not available.
+	 */
+	public FrameSnapshot frame(int history);
+
+	/**
+	 * Turn on reporting of a gesture type (one of the FrameSnapshot.GESTURE_* constants).
+	 *
+	 * @param gestureType
+	 */
+	public void enableGesture(int gestureType);
+
+	/**
+	 * Release the device or recording.
+	 */
+	public void close();
+}
@@ -0,0 +1,273 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.leapmotion.leap.CircleGesture;
+import com.leapmotion.leap.Controller;
+import com.leapmotion.leap.Frame;
+import com.leapmotion.leap.Gesture;
+import com.leapmotion.leap.GestureList;
+import com.leapmotion.leap.Hand;
+import com.leapmotion.leap.HandList;
+import com.leapmotion.leap.InteractionBox;
+import com.leapmotion.leap.KeyTapGesture;
+import com.leapmotion.leap.Listener;
+import com.leapmotion.leap.Pointable;
+import com.leapmotion.leap.PointableList;
+import com.leapmotion.leap.ScreenTapGesture;
+import com.leapmotion.leap.SwipeGesture;
+import com.leapmotion.leap.Vector;
+
+/**
+ * A FrameSource backed by a Leap Motion Controller. Frames are not polled from draw(); instead a Listener converts each frame on the Leap
+ * Motion callback thread as soon as the device produces it, and publishes it through a FrameRingBuffer that draw() drains. Optionally records
+ * every device frame with a FrameRecorder, so the session can be played back with ReplayFrameSource.
+ */
+public class LiveFrameSource implements FrameSource {
+	public static final int RING_CAPACITY = 256;
+
+	private final Controller controller;
+	private final FrameRingBuffer ring = new FrameRingBuffer(RING_CAPACITY);
+	private final Listener listener = new FrameListener();
+	private final FrameSnapshot empty = new FrameSnapshot();
+	private final FrameSnapshot history = new FrameSnapshot();
+	// Used by the listener thread to record frames that did not fit in the ring.
+	private final FrameSnapshot overflow = new FrameSnapshot();
+	private FrameSnapshot current;
+	// The frame id and age that the history snapshot was captured for, so repeated lookups in one draw cross into the SDK only once.
+	private long historyFrameId = -1;
+	private int historyAge = -1;
+	private volatile FrameRecorder recorder;
+
+	public LiveFrameSource() {
+		this(new Controller());
+	}
+
+	public LiveFrameSource(Controller controller) {
+		this.controller = controller;
+		controller.addListener(listener);
+	}
+
+	/**
+	 * Record every new frame to the given file until close() is called.
+	 *
+	 * @param recordFile
+	 * @throws IOException
+	 */
+	public void record(File recordFile) throws IOException {
+		this.recorder = new FrameRecorder(recordFile);
+	}
+
+	public Controller getController() {
+		return controller;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return controller.isConnected();
+	}
+
+	/**
+	 * @return The number of device frames dropped because draw() fell too far behind.
+	 */
+	public long getDroppedCount() {
+		return ring.getDroppedCount();
+	}
+
+	@Override
+	public FrameSnapshot frame() {
+		FrameSnapshot latest = ring.latest();
+		if (latest != null)
+			current = latest;
+		return current != null ? current : empty;
+	}
+
+	@Override
+	public FrameSnapshot nextFrame() {
+		FrameSnapshot next = ring.poll();
+		if (next != null)
+			current = next;
+		return next;
+	}
+
+	@Override
+	public FrameSnapshot frame(int history) {
+		if (history == 0)
+			return frame();
+		long frameId = current != null ? current.getId() : -1;
+		if (frameId != historyFrameId || history != historyAge) {
+			Frame frame = controller.frame(history);
+			if (!frame.isValid())
+				return null;
+			capture(frame, this.history);
+			historyFrameId = frameId;
+			historyAge = history;
+		}
+		return this.history;
+	}
+
+	@Override
+	public void enableGesture(int gestureType) {
+		switch (gestureType) {
+		case FrameSnapshot.GESTURE_SWIPE:
+			controller.enableGesture(Gesture.Type.TYPE_SWIPE);
+			break;
+		case FrameSnapshot.GESTURE_CIRCLE:
+			controller.enableGesture(Gesture.Type.TYPE_CIRCLE);
+			break;
+		case FrameSnapshot.GESTURE_SCREEN_TAP:
+			controller.enableGesture(Gesture.Type.TYPE_SCREEN_TAP);
+			break;
+		case FrameSnapshot.GESTURE_KEY_TAP:
+			controller.enableGesture(Gesture.Type.TYPE_KEY_TAP);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown gesture type: " + gestureType);
+		}
+	}
+
+	@Override
+	public void close() {
+		controller.removeListener(listener);
+		// Stop the listener from recording before the file is closed.
+		FrameRecorder recorder = this.recorder;
+		this.recorder = null;
+		if (recorder != null) {
+			try {
+				recorder.close();
+			} catch (IOException ex) {
+				throw new IllegalStateException("Could not close the frame recording.", ex);
+			}
+		}
+	}
+
+	/**
+	 * Runs on the Leap Motion callback thread, once per device frame.
+	 */
+	private class FrameListener extends Listener {
+		@Override
+		public void onFrame(Controller controller) {
+			Frame frame = controller.frame();
+			FrameSnapshot slot = ring.claim();
+			if (slot != null) {
+				capture(frame, slot);
+				record(slot);
+				ring.publish();
+			} else if (recorder != null) {
+				capture(frame, overflow);
+				record(overflow);
+			}
+		}
+
+		private void record(FrameSnapshot frame) {
+			FrameRecorder recorder = LiveFrameSource.this.recorder;
+			if (recorder == null)
+				return;
+			try {
+				recorder.write(frame);
+			} catch (IOException ex) {
+				throw new IllegalStateException("Could not write to the frame recording.", ex);
+			}
+		}
+	}
+
+	/**
+	 * Copy the parts of a Leap Motion Frame that the sketches use into a snapshot. Each SDK accessor is called once per object, since every call
+	 * crosses into native code and most of them allocate a new wrapper object.
+	 *
+	 * @param frame
+	 * @param snapshot
+	 */
+	public static void capture(Frame frame, FrameSnapshot snapshot) {
+		snapshot.reset();
+		snapshot.setFrame(frame.id(), frame.timestamp(), frame.currentFramesPerSecond());
+
+		InteractionBox iBox = frame.interactionBox();
+		Vector center = iBox.center();
+		snapshot.setInteractionBox(center.getX(), center.getY(), center.getZ(), iBox.width(), iBox.height(), iBox.depth());
+
+		// Indexed loops rather than the list iterators, which add an object and a native call per element.
+		HandList hands = frame.hands();
+		int handCount = hands.count();
+		for (int i = 0; i < handCount; i++) {
+			Hand hand = hands.get(i);
+			Vector palm = hand.palmPosition();
+			snapshot.addHand(hand.id(), palm.getX(), palm.getY(), palm.getZ());
+		}
+
+		PointableList pointables = frame.pointables();
+		int pointableCount = pointables.count();
+		for (int p = 0; p < pointableCount; p++) {
+			Pointable pointable = pointables.get(p);
+			// Find the index of the owning hand, since the snapshot refers to hands by index. Pointables without a hand have an invalid id, which
+			// matches none of the hands.
+			int handId = pointable.hand().id();
+			int handIndex = -1;
+			for (int i = 0; i < snapshot.getHandCount(); i++) {
+				if (snapshot.getHandId(i) == handId) {
+					handIndex = i;
+					break;
+				}
+			}
+			Vector tip = pointable.tipPosition();
+			Vector direction = pointable.direction();
+			snapshot.addPointable(pointable.id(), handIndex, pointable.isTool(), tip.getX(), tip.getY(), tip.getZ(), direction.getX(),
+					direction.getY(), direction.getZ());
+		}
+
+		GestureList gestures = frame.gestures();
+		int gestureCount = gestures.count();
+		for (int g = 0; g < gestureCount; g++) {
+			Gesture gesture = gestures.get(g);
+			int state = toState(gesture.state());
+			switch (gesture.type()) {
+			case TYPE_SWIPE:
+				SwipeGesture swipe = new SwipeGesture(gesture);
+				addGesture(snapshot, gesture.id(), FrameSnapshot.GESTURE_SWIPE, state, swipe.pointable().id(), 0, false, swipe.position(),
+						swipe.direction());
+				break;
+			case TYPE_CIRCLE:
+				CircleGesture circle = new CircleGesture(gesture);
+				Pointable circlePointable = circle.pointable();
+				Vector normal = circle.normal();
+				// Clockwise if the angle between the circle normal and the pointable is less than 90 degrees.
+				boolean clockwise = circlePointable.direction().angleTo(normal) <= Math.PI / 4;
+				addGesture(snapshot, gesture.id(), FrameSnapshot.GESTURE_CIRCLE, state, circlePointable.id(), circle.progress(), clockwise,
+						circle.center(), normal);
+				break;
+			case TYPE_SCREEN_TAP:
+				ScreenTapGesture screenTap = new ScreenTapGesture(gesture);
+				addGesture(snapshot, gesture.id(), FrameSnapshot.GESTURE_SCREEN_TAP, state, screenTap.pointable().id(), screenTap.progress(), false,
+						screenTap.position(), screenTap.direction());
+				break;
+			case TYPE_KEY_TAP:
+				KeyTapGesture keyTap = new KeyTapGesture(gesture);
+				addGesture(snapshot, gesture.id(), FrameSnapshot.GESTURE_KEY_TAP, state, keyTap.pointable().id(), keyTap.progress(), false,
+						keyTap.position(), keyTap.direction());
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private static void addGesture(FrameSnapshot snapshot, int gestureId, int type, int state, int pointableId, float progress,
+			boolean clockwise, Vector position, Vector direction) {
+		snapshot.addGesture(gestureId, type, state, pointableId, progress, clockwise, position.getX(), position.getY(), position.getZ(),
+				direction.getX(), direction.getY(), direction.getZ());
+	}
+
+	private static int toState(Gesture.State state) {
+		switch (state) {
+		case STATE_START:
+			return FrameSnapshot.STATE_START;
+		case STATE_UPDATE:
+			return FrameSnapshot.STATE_UPDATE;
+		case STATE_STOP:
+			return FrameSnapshot.STATE_STOP;
+		default:
+			return FrameSnapshot.STATE_INVALID;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package util;
+
+/**
+ * Removes jitter from the tip position and direction of each pointable with a One Euro filter: a low-pass filter whose cutoff rises with the
+ * speed of the pointable. At rest the cutoff is low, so the pointer holds still; when it moves the cutoff goes up, so it follows with little
+ * lag. minCutoff sets how much jitter is removed at rest, and beta how quickly the lag goes away as speed increases.
+ *
+ * Pass every device frame through filter() (e.g. while draining FrameSource.nextFrame()), and the frame about to be drawn. The output is a
+ * frame like any other, so it can be given to the LeapMotionUtil mapping or a PointerPredictor. State is kept in primitive arrays per pointable
+ * id, so nothing is allocated per sample.
+ *
+ * Source: http://www.lifl.fr/~casiez/1euro/
+ */
+public class OneEuroFilter {
+	public static final float DEFAULT_MIN_CUTOFF = 1.0f; // Hz.
+	public static final float DEFAULT_BETA = 0.01f;
+	public static final float DEFAULT_DERIVATIVE_CUTOFF = 1.0f; // Hz.
+
+	private static final int MAX_TRACKED = FrameSnapshot.MAX_POINTABLES;
+	// Tip x, y, z and direction x, y, z.
+	private static final int COMPONENTS = 6;
+	private static final float MICROS_PER_SECOND = 1000000f;
+
+	private final float minCutoff;
+	private final float beta;
+	private final float derivativeCutoff;
+
+	private final boolean[] tracked = new boolean[MAX_TRACKED];
+	private final int[] ids = new int[MAX_TRACKED];
+	private final long[] timestamps = new long[MAX_TRACKED];
+	private final float[] values = new float[MAX_TRACKED * COMPONENTS];
+	private final float[] derivatives = new float[MAX_TRACKED * COMPONENTS];
+	private final float[] scratch = new float[COMPONENTS];
+
+	public OneEuroFilter() {
+		this(DEFAULT_MIN_CUTOFF, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF);
+	}
+
+	/**
+	 * @param minCutoff
+	 *            The cutoff frequency at rest, in Hz. Lower removes more jitter.
+	 * @param beta
+	 *            How much the cutoff rises with speed. Higher removes more lag.
+	 * @param derivativeCutoff
+	 *            The cutoff frequency for the speed estimate, in Hz.
+	 * @throws IllegalArgumentException
+	 */
+	public OneEuroFilter(float minCutoff, float beta, float derivativeCutoff) throws IllegalArgumentException {
+		if (minCutoff <= 0 || beta < 0 || derivativeCutoff <= 0)
+			throw new IllegalArgumentException("Invalid filter parameters. Given: minCutoff=" + minCutoff + ", beta=" + beta + ", derivativeCutoff="
+					+ derivativeCutoff);
+		this.minCutoff = minCutoff;
+		this.beta = beta;
+		this.derivativeCutoff = derivativeCutoff;
+	}
+
+	/**
+	 * Filter a frame. A frame that is not newer than the last one given leaves the filters as they are, so the latest frame can safely be passed
+	 * again.
+	 *
+	 * @param frame
+	 * @param filtered
+	 *            Receives a copy of the frame with the tip positions and directions filtered. May be the same snapshot as frame.
+	 */
+	public void filter(FrameSnapshot frame, FrameSnapshot filtered) {
+		long timestamp = frame.getTimestamp();
+
+		// Forget pointables that are no longer in view.
+		for (int s = 0; s < MAX_TRACKED; s++) {
+			if (tracked[s] && frame.findPointable(ids[s]) < 0)
+				tracked[s] = false;
+		}
+
+		if (filtered != frame)
+			filtered.copyFrom(frame);
+
+		for (int i = 0; i < frame.getPointableCount(); i++) {
+			int s = slot(frame.getPointableId(i));
+			if (s < 0)
+				continue;
+
+			if (!tracked[s]) {
+				tracked[s] = true;
+				ids[s] = frame.getPointableId(i);
+				timestamps[s] = timestamp;
+				read(frame, i, scratch);
+				for (int c = 0; c < COMPONENTS; c++) {
+					values[s * COMPONENTS + c] = scratch[c];
+					derivatives[s * COMPONENTS + c] = 0;
+				}
+				continue;
+			}
+
+			float dt = (timestamp - timestamps[s]) / MICROS_PER_SECOND;
+			if (dt > 0) {
+				read(frame, i, scratch);
+				float derivativeAlpha = alpha(derivativeCutoff, dt);
+				for (int c = 0; c < COMPONENTS; c++) {
+					int j = s * COMPONENTS + c;
+					float derivative = derivatives[j] + derivativeAlpha * ((scratch[c] - values[j]) / dt - derivatives[j]);
+					float cutoff = minCutoff + beta * Math.abs(derivative);
+					values[j] += alpha(cutoff, dt) * (scratch[c] - values[j]);
+					derivatives[j] = derivative;
+				}
+				timestamps[s] = timestamp;
+			}
+
+			// Averaging unit vectors shortens them, so renormalize the direction.
+			int j = s * COMPONENTS;
+			float length = (float) Math.sqrt(values[j + 3] * values[j + 3] + values[j + 4] * values[j + 4] + values[j + 5] * values[j + 5]);
+			if (length == 0)
+				length = 1;
+			filtered.setPointable(i, values[j], values[j + 1], values[j + 2], values[j + 3] / length, values[j + 4] / length, values[j + 5] / length);
+		}
+	}
+
+	/**
+	 * @return The smoothing factor of a first order low-pass filter with the given cutoff frequency and sample interval.
+	 */
+	private static float alpha(float cutoff, float dt) {
+		float tau = 1 / (2 * (float) Math.PI * cutoff);
+		return 1 / (1 + tau / dt);
+	}
+
+	private static void read(FrameSnapshot frame, int pointable, float[] out) {
+		out[0] = frame.getTipX(pointable);
+		out[1] = frame.getTipY(pointable);
+		out[2] = frame.getTipZ(pointable);
+		out[3] = frame.getDirectionX(pointable);
+		out[4] = frame.getDirectionY(pointable);
+		out[5] = frame.getDirectionZ(pointable);
+	}
+
+	/**
+	 * @return The slot tracking the pointable, or a free slot for it, or -1 if all slots are in use.
+	 */
+	private int slot(int pointableId) {
+		int free = -1;
+		for (int s = 0; s < MAX_TRACKED; s++) {
+			if (tracked[s] && ids[s] == pointableId)
+				return s;
+			if (!tracked[s] && free < 0)
+				free = s;
+		}
+		return free;
+	}
+}
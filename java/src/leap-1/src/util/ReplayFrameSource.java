@@ -0,0 +1,162 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A FrameSource that plays back a recording made with FrameRecorder. In real-time mode frames are handed out according to their recorded
+ * timestamps; otherwise each draw() gets exactly one new recorded frame, so a sketch can be driven as fast as it can render.
+ *
+ * A draw starts with the first call to frame() or nextFrame() and ends with the call to frame().
+ */
+public class ReplayFrameSource implements FrameSource {
+	private final FrameRecording recording;
+	private final boolean realTime;
+	private final boolean loop;
+	private final FrameSnapshot current = new FrameSnapshot();
+	private final FrameSnapshot history = new FrameSnapshot();
+	// Index of the last frame handed out.
+	private int position = -1;
+	// Number of frames that may be handed out in the current draw.
+	private int available = 0;
+	private boolean tickOpen = false;
+	private long startNanos;
+	private boolean finished = false;
+
+	public ReplayFrameSource(File recordingFile, boolean realTime, boolean loop) throws IOException {
+		this(new FrameRecording(recordingFile), realTime, loop);
+	}
+
+	public ReplayFrameSource(FrameRecording recording, boolean realTime, boolean loop) {
+		this.recording = recording;
+		this.realTime = realTime;
+		this.loop = loop;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return recording.getFrameCount() > 0;
+	}
+
+	/**
+	 * @return True once the last recorded frame has been handed out (never true when looping).
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public int getFrameCount() {
+		return recording.getFrameCount();
+	}
+
+	/**
+	 * Jump to the frame that was current at the given device timestamp.
+	 *
+	 * @param timestamp
+	 *            In microseconds.
+	 */
+	public void seekTimestamp(long timestamp) {
+		seek(recording.seekTimestamp(timestamp));
+	}
+
+	/**
+	 * Jump to the frame with the given Leap Motion frame id.
+	 *
+	 * @param id
+	 */
+	public void seekId(long id) {
+		seek(recording.seekId(id));
+	}
+
+	@Override
+	public FrameSnapshot frame() {
+		tick();
+		// frame() ends the draw; the next call starts a new one.
+		tickOpen = false;
+		if (position < available - 1) {
+			position = available - 1;
+			recording.read(position, current);
+		}
+		return current;
+	}
+
+	@Override
+	public FrameSnapshot nextFrame() {
+		tick();
+		if (position >= available - 1)
+			return null;
+		position++;
+		recording.read(position, current);
+		return current;
+	}
+
+	@Override
+	public FrameSnapshot frame(int history) {
+		int index = position - history;
+		if (position < 0 || history < 0 || index < 0)
+			return null;
+		if (history == 0)
+			return current;
+		recording.read(index, this.history);
+		return this.history;
+	}
+
+	@Override
+	public void enableGesture(int gestureType) {
+		// Gestures were recorded by the device; nothing to enable.
+	}
+
+	@Override
+	public void close() {
+
+	}
+
+	private void seek(int index) {
+		if (index < 0)
+			return;
+		position = index;
+		available = index + 1;
+		tickOpen = false;
+		recording.read(position, current);
+		// Restart the playback clock from the new position.
+		startNanos = System.nanoTime() - (recording.getTimestamp(position) - recording.getTimestamp(0)) * 1000;
+		finished = false;
+	}
+
+	/**
+	 * Start a new draw, working out how many frames are available to it.
+	 */
+	private void tick() {
+		if (tickOpen)
+			return;
+		tickOpen = true;
+
+		int frameCount = recording.getFrameCount();
+		if (frameCount == 0 || finished)
+			return;
+		if (available == 0) {
+			startNanos = System.nanoTime();
+			available = 1;
+			return;
+		}
+
+		// Timestamps are in microseconds.
+		long target = recording.getTimestamp(0) + (System.nanoTime() - startNanos) / 1000;
+		if (position == frameCount - 1 && (!realTime || target > recording.getTimestamp(position))) {
+			// End of the session.
+			if (loop) {
+				position = -1;
+				available = 1;
+				startNanos = System.nanoTime();
+			} else {
+				finished = true;
+			}
+			return;
+		}
+
+		if (realTime)
+			available = Math.max(available, recording.seekTimestamp(target) + 1);
+		else if (available < frameCount)
+			available++;
+	}
+}
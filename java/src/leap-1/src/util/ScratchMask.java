@@ -0,0 +1,331 @@
+package util;
+
+import java.util.Arrays;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * Reveals a hidden image through a cover image, one dot at a time, like a scratch-off ticket. The dots accumulate in a coverage buffer and
+ * each stamp only touches the pixels under the new dot, so the cost of a frame depends on the size of the dots drawn in it, not on how many
+ * were drawn before or on the size of the image.
+ *
+ * Draw getImage() to show the result.
+ *
+ * A pixel counts as revealed once it is at least half uncovered. The revealed pixels are counted as they are stamped, in total and per square
+ * region, so the revealed fraction of the image or of a region is known without scanning it. A Listener is told when a region, and when the
+ * whole image, has been revealed past a threshold.
+ */
+public class ScratchMask {
+	public static final int DEFAULT_REGION_SIZE = 50; // Pixels.
+	public static final float DEFAULT_REGION_THRESHOLD = 0.9f;
+	public static final float DEFAULT_REVEAL_THRESHOLD = 0.9f;
+
+	// Coverage from which a pixel counts as revealed.
+	private static final int REVEALED = 128;
+
+	/**
+	 * Told when parts of the image have been revealed. Each event fires once, until the part is covered up again by clear().
+	 */
+	public interface Listener {
+		/**
+		 * A region has been revealed past the region threshold.
+		 */
+		void regionRevealed(int regionX, int regionY);
+
+		/**
+		 * The image has been revealed past the reveal threshold.
+		 */
+		void revealed();
+	}
+
+	private final int width;
+	private final int height;
+	private final int[] coverPixels;
+	private final int[] hiddenPixels;
+	private final PImage image;
+	// How much of each pixel is revealed, from 0 to 255.
+	private final byte[] coverage;
+	// The bounds of everything stamped since the last clear(), empty if minX > maxX.
+	private int minX, minY, maxX, maxY;
+
+	private final int regionSize;
+	private final int regionColumns;
+	private final int regionRows;
+	// The region column of each pixel column.
+	private final int[] columnRegions;
+	private final int[] regionPixels;
+	private final int[] regionRevealed;
+	private final boolean[] regionComplete;
+	private int revealedCount = 0;
+	private boolean complete = false;
+	private float regionThreshold = DEFAULT_REGION_THRESHOLD;
+	private float revealThreshold = DEFAULT_REVEAL_THRESHOLD;
+	private Listener listener;
+
+	/**
+	 * @param pApplet
+	 * @param cover
+	 *            The image shown where nothing has been revealed.
+	 * @param hidden
+	 *            The image revealed by the dots. Must be the same size as cover.
+	 * @throws IllegalArgumentException
+	 */
+	public ScratchMask(PApplet pApplet, PImage cover, PImage hidden) throws IllegalArgumentException {
+		this(pApplet, cover, hidden, DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * @param pApplet
+	 * @param cover
+	 *            The image shown where nothing has been revealed.
+	 * @param hidden
+	 *            The image revealed by the dots. Must be the same size as cover.
+	 * @param regionSize
+	 *            The width and height of the regions revealed pixels are counted in.
+	 * @throws IllegalArgumentException
+	 */
+	public ScratchMask(PApplet pApplet, PImage cover, PImage hidden, int regionSize) throws IllegalArgumentException {
+		if (regionSize < 1)
+			throw new IllegalArgumentException("Region size must be at least 1. Given: " + regionSize);
+		if (cover.width != hidden.width || cover.height != hidden.height)
+			throw new IllegalArgumentException("The images must be the same size. Given: " + cover.width + "x" + cover.height + " and "
+					+ hidden.width + "x" + hidden.height);
+		width = cover.width;
+		height = cover.height;
+		cover.loadPixels();
+		hidden.loadPixels();
+		coverPixels = cover.pixels;
+		hiddenPixels = hidden.pixels;
+		image = pApplet.createImage(width, height, PApplet.RGB);
+		image.loadPixels();
+		System.arraycopy(coverPixels, 0, image.pixels, 0, coverPixels.length);
+		image.updatePixels();
+		coverage = new byte[width * height];
+		resetBounds();
+
+		this.regionSize = regionSize;
+		regionColumns = (width + regionSize - 1) / regionSize;
+		regionRows = (height + regionSize - 1) / regionSize;
+		columnRegions = new int[width];
+		for (int x = 0; x < width; x++)
+			columnRegions[x] = x / regionSize;
+		regionPixels = new int[regionColumns * regionRows];
+		regionRevealed = new int[regionColumns * regionRows];
+		regionComplete = new boolean[regionColumns * regionRows];
+		for (int ry = 0; ry < regionRows; ry++) {
+			for (int rx = 0; rx < regionColumns; rx++)
+				regionPixels[ry * regionColumns + rx] = (Math.min(width, (rx + 1) * regionSize) - rx * regionSize)
+						* (Math.min(height, (ry + 1) * regionSize) - ry * regionSize);
+		}
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param regionThreshold
+	 *            The fraction of a region that must be revealed for Listener.regionRevealed().
+	 * @throws IllegalArgumentException
+	 */
+	public void setRegionThreshold(float regionThreshold) throws IllegalArgumentException {
+		if (regionThreshold <= 0 || regionThreshold > 1)
+			throw new IllegalArgumentException("Threshold must be in (0, 1]. Given: " + regionThreshold);
+		this.regionThreshold = regionThreshold;
+	}
+
+	/**
+	 * @param revealThreshold
+	 *            The fraction of the image that must be revealed for Listener.revealed().
+	 * @throws IllegalArgumentException
+	 */
+	public void setRevealThreshold(float revealThreshold) throws IllegalArgumentException {
+		if (revealThreshold <= 0 || revealThreshold > 1)
+			throw new IllegalArgumentException("Threshold must be in (0, 1]. Given: " + revealThreshold);
+		this.revealThreshold = revealThreshold;
+	}
+
+	/**
+	 * @return The fraction of the image that has been revealed.
+	 */
+	public float getRevealedFraction() {
+		return (float) revealedCount / coverage.length;
+	}
+
+	public int getRegionColumns() {
+		return regionColumns;
+	}
+
+	public int getRegionRows() {
+		return regionRows;
+	}
+
+	/**
+	 * @param regionX
+	 * @param regionY
+	 * @return The fraction of the region that has been revealed.
+	 */
+	public float getRegionRevealedFraction(int regionX, int regionY) {
+		int region = regionY * regionColumns + regionX;
+		return (float) regionRevealed[region] / regionPixels[region];
+	}
+
+	/**
+	 * @param regionX
+	 * @param regionY
+	 * @return Whether the region has been revealed past the region threshold.
+	 */
+	public boolean isRegionRevealed(int regionX, int regionY) {
+		return regionComplete[regionY * regionColumns + regionX];
+	}
+
+	/**
+	 * @return Whether the image has been revealed past the reveal threshold.
+	 */
+	public boolean isRevealed() {
+		return complete;
+	}
+
+	/**
+	 * @return The cover with the revealed parts of the hidden image. Do not modify it.
+	 */
+	public PImage getImage() {
+		return image;
+	}
+
+	/**
+	 * Reveal a dot. The edge is anti-aliased over one pixel.
+	 *
+	 * @param x
+	 * @param y
+	 * @param radius
+	 */
+	public void stamp(float x, float y, float radius) {
+		int x0 = Math.max(0, (int) Math.floor(x - radius - 1));
+		int y0 = Math.max(0, (int) Math.floor(y - radius - 1));
+		int x1 = Math.min(width - 1, (int) Math.ceil(x + radius + 1));
+		int y1 = Math.min(height - 1, (int) Math.ceil(y + radius + 1));
+		if (x0 > x1 || y0 > y1)
+			return;
+
+		float inner = Math.max(0, radius - 0.5f);
+		float innerSq = inner * inner;
+		float outer = radius + 0.5f;
+		float outerSq = outer * outer;
+		int[] pixels = image.pixels;
+		int stampRevealed = 0;
+		for (int py = y0; py <= y1; py++) {
+			float dy = py + 0.5f - y;
+			int row = py * width;
+			int regionRow = py / regionSize * regionColumns;
+			for (int px = x0; px <= x1; px++) {
+				float dx = px + 0.5f - x;
+				float distSq = dx * dx + dy * dy;
+				if (distSq >= outerSq)
+					continue;
+				int i = row + px;
+				int old = coverage[i] & 0xff;
+				if (old == 255)
+					continue;
+				int c = distSq <= innerSq ? 255 : (int) ((outer - (float) Math.sqrt(distSq)) * 255);
+				if (c <= old)
+					continue;
+				coverage[i] = (byte) c;
+				pixels[i] = c == 255 ? hiddenPixels[i] : blend(coverPixels[i], hiddenPixels[i], c);
+				if (old < REVEALED && c >= REVEALED) {
+					regionRevealed[regionRow + columnRegions[px]]++;
+					stampRevealed++;
+				}
+			}
+		}
+		markDirty(x0, y0, x1, y1);
+		if (stampRevealed > 0) {
+			revealedCount += stampRevealed;
+			checkRevealed(x0, y0, x1, y1);
+		}
+	}
+
+	/**
+	 * Cover everything up again. Only the area stamped since the last clear is touched.
+	 */
+	public void clear() {
+		if (minX > maxX)
+			return;
+		int[] pixels = image.pixels;
+		for (int py = minY; py <= maxY; py++) {
+			int i = py * width + minX;
+			int regionRow = py / regionSize * regionColumns;
+			for (int px = minX; px <= maxX; px++) {
+				if ((coverage[py * width + px] & 0xff) >= REVEALED) {
+					regionRevealed[regionRow + columnRegions[px]]--;
+					revealedCount--;
+				}
+			}
+			System.arraycopy(coverPixels, i, pixels, i, maxX - minX + 1);
+			Arrays.fill(coverage, i, i + maxX - minX + 1, (byte) 0);
+		}
+		image.updatePixels(minX, minY, maxX - minX + 1, maxY - minY + 1);
+
+		// Let the events fire again for what has been covered up.
+		for (int ry = minY / regionSize; ry <= maxY / regionSize; ry++) {
+			for (int rx = minX / regionSize; rx <= maxX / regionSize; rx++) {
+				int region = ry * regionColumns + rx;
+				if (regionRevealed[region] < regionThreshold * regionPixels[region])
+					regionComplete[region] = false;
+			}
+		}
+		if (revealedCount < revealThreshold * coverage.length)
+			complete = false;
+		resetBounds();
+	}
+
+	/**
+	 * Fire the events for the regions under a stamp, and for the image.
+	 */
+	private void checkRevealed(int x0, int y0, int x1, int y1) {
+		for (int ry = y0 / regionSize; ry <= y1 / regionSize; ry++) {
+			for (int rx = x0 / regionSize; rx <= x1 / regionSize; rx++) {
+				int region = ry * regionColumns + rx;
+				if (!regionComplete[region] && regionRevealed[region] >= regionThreshold * regionPixels[region]) {
+					regionComplete[region] = true;
+					if (listener != null)
+						listener.regionRevealed(rx, ry);
+				}
+			}
+		}
+		if (!complete && revealedCount >= revealThreshold * coverage.length) {
+			complete = true;
+			if (listener != null)
+				listener.revealed();
+		}
+	}
+
+	private void markDirty(int x0, int y0, int x1, int y1) {
+		image.updatePixels(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+		minX = Math.min(minX, x0);
+		minY = Math.min(minY, y0);
+		maxX = Math.max(maxX, x1);
+		maxY = Math.max(maxY, y1);
+	}
+
+	private void resetBounds() {
+		minX = width;
+		minY = height;
+		maxX = -1;
+		maxY = -1;
+	}
+
+	/**
+	 * @return The cover pixel mixed with the hidden one by amount / 255.
+	 */
+	private static int blend(int cover, int hidden, int amount) {
+		int r = (cover >> 16) & 0xff;
+		int g = (cover >> 8) & 0xff;
+		int b = cover & 0xff;
+		r += (((hidden >> 16) & 0xff) - r) * amount / 255;
+		g += (((hidden >> 8) & 0xff) - g) * amount / 255;
+		b += ((hidden & 0xff) - b) * amount / 255;
+		return 0xff000000 | (r << 16) | (g << 8) | b;
+	}
+}
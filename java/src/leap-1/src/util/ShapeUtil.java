@@ -4,13 +4,14 @@ import processing.core.PApplet;
 
 import java.awt.Color;
 import java.awt.geom.Point2D;
-import org.apache.commons.lang3.StringUtils;
 
 public class ShapeUtil {
 	public static final int DEFAULT_STROKE_WEIGHT = 1;
 	public static final int[] DEFAULT_STROKE_COLOR = new int[] { 0, 0, 0 };
 	public static final int DEFAULT_ALPHA_MAX = 255;
 	private static final float lineSpacingMultiplier = (float) 0.45;
+	// Measured text boxes, shared by all sketches.
+	private static final TextLayoutCache textLayouts = new TextLayoutCache();
 
 	// Make ctor private so you can only use this class statically.
 	private ShapeUtil() {
@@ -45,17 +46,17 @@ public class ShapeUtil {
 	 * @return
 	 */
 	public static float[] getTooltipDimensions(PApplet pApplet, String[] lines, int textSize, float padLeft, float padRight, float padTop, float padBottom) {
-		// Find longest line.
-		float maxLine = 0;
-		for (int i = 0; i < lines.length; i++) {
-			if (pApplet.textWidth(lines[i]) > maxLine) {
-				maxLine = pApplet.textWidth(lines[i]);
-			}
-		}
+		TextLayoutCache.Layout layout = textLayouts.get(pApplet, lines, textSize, padLeft, padRight, padTop, padBottom);
+		return new float[] { layout.getWidth(), layout.getHeight() };
+	}
 
-		float rectWidth = padLeft + maxLine + padRight;
-		float rectHeight = padTop + (textSize * (1 + lineSpacingMultiplier) * lines.length) + padBottom;
-		return new float[] { rectWidth, rectHeight };
+	/**
+	 * @param textSize
+	 * @param lineCount
+	 * @return The height of some lines of text, without padding.
+	 */
+	static float getTextBlockHeight(int textSize, int lineCount) {
+		return textSize * (1 + lineSpacingMultiplier) * lineCount;
 	}
 
 	/**
@@ -120,11 +121,38 @@ public class ShapeUtil {
 	 */
 	public static void drawRectangleWithText(PApplet pApplet, float x, float y, int curve, float padLeft, float padRight, float padTop, float padBottom, int[] rectRgb, int[] textRgb, int textSize,
 			String[] lines, boolean alignRight, boolean alignBottom) {
+		drawRectangleWithText(pApplet, x, y, curve, padLeft, padRight, padTop, padBottom, rectRgb, textRgb, textSize, lines, alignRight, alignBottom,
+				false);
+	}
+
+	/**
+	 * Draw a rectangle on the Processing Applet and place text inside it. The layout is cached, so drawing the same text again does not
+	 * measure it again.
+	 * 
+	 * @param pApplet
+	 * @param x
+	 * @param y
+	 * @param curve
+	 * @param padLeft
+	 * @param padRight
+	 * @param padTop
+	 * @param padBottom
+	 * @param rectRgb
+	 * @param textRgb
+	 * @param textSize
+	 * @param lines
+	 * @param alightRight
+	 * @param alightBottom
+	 * @param prerendered
+	 *            Draw the box from an image rendered the first time, for text that is drawn over and over.
+	 */
+	public static void drawRectangleWithText(PApplet pApplet, float x, float y, int curve, float padLeft, float padRight, float padTop, float padBottom, int[] rectRgb, int[] textRgb, int textSize,
+			String[] lines, boolean alignRight, boolean alignBottom, boolean prerendered) {
 		// Calculate the rectangle dimensions based on the amount of text and
 		// the font size.
-		float[] rectDims = ShapeUtil.getTooltipDimensions(pApplet, lines, textSize, padLeft, padRight, padTop, padBottom);
-		float rectWidth = rectDims[0];
-		float rectHeight = rectDims[1];
+		TextLayoutCache.Layout layout = textLayouts.get(pApplet, lines, textSize, padLeft, padRight, padTop, padBottom);
+		float rectWidth = layout.getWidth();
+		float rectHeight = layout.getHeight();
 
 		// If the rectangle is right or bottom aligned, adjust the x or y
 		// coordinate accordingly.
@@ -134,12 +162,16 @@ public class ShapeUtil {
 															// the
 		// stroke width.
 
-		String text = StringUtils.join(lines, "\n");
+		if (prerendered) {
+			float offset = TextLayoutCache.getImageOffset(pApplet.g.stroke ? pApplet.g.strokeWeight : 0);
+			pApplet.image(textLayouts.getImage(pApplet, layout, curve, rectRgb, textRgb), trueX - offset, trueY - offset);
+			return;
+		}
 		pApplet.fill(rectRgb[0], rectRgb[1], rectRgb[2]);
 		pApplet.rect(trueX, trueY, rectWidth, rectHeight, curve);
 		pApplet.textSize(textSize);
 		pApplet.fill(textRgb[0], textRgb[1], textRgb[2]);
-		pApplet.text(text, trueX + padLeft, trueY + padTop);
+		pApplet.text(layout.getText(), trueX + padLeft, trueY + padTop);
 	}
 
 	/**
@@ -156,4 +188,28 @@ public class ShapeUtil {
 		Color c = Color.decode(colorStr);
 		return new int[] { c.getRed(), c.getGreen(), c.getBlue() };
 	}
+
+	/**
+	 * Get the current frame. (A hack for Eclipse from https://forum.processing.org/topic/trying-to-use-processing-in-eclipse).
+	 * 
+	 * @return
+	 */
+	public static java.awt.Frame findFrame(PApplet pApplet) {
+		java.awt.Container f = pApplet.getParent();
+		while (!(f instanceof java.awt.Frame) && f != null)
+			f = f.getParent();
+		return (java.awt.Frame) f;
+	}
+
+	/**
+	 * Let the user resize the sketch window, or not. Does nothing if the sketch has no window, e.g. when it is run by HeadlessRunner.
+	 * 
+	 * @param pApplet
+	 * @param resizable
+	 */
+	public static void setResizable(PApplet pApplet, boolean resizable) {
+		java.awt.Frame frame = findFrame(pApplet);
+		if (frame != null)
+			frame.setResizable(resizable);
+	}
 }
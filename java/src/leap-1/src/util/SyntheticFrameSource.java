@@ -0,0 +1,100 @@
+package util;
+
+/**
+ * A FrameSource that makes up its frames: two hands moving smoothly around the interaction box, the left with one finger out and the right
+ * with one to three, cycling every few seconds. The frames depend only on their number, so every run sees the same input, and each draw()
+ * gets exactly one new frame, like a replay that is not in real time. Use it to drive a sketch without a device or a recording.
+ */
+public class SyntheticFrameSource implements FrameSource {
+	// The rate the frames are timestamped at, one frame per draw.
+	public static final float FRAMES_PER_SECOND = 60;
+
+	private static final int LEFT_HAND_ID = 1;
+	private static final int RIGHT_HAND_ID = 2;
+	private static final float FINGER_SPREAD = 20; // mm
+	private static final float FINGER_LENGTH = 60; // mm
+
+	private final FrameSnapshot current = new FrameSnapshot();
+	private final FrameSnapshot history = new FrameSnapshot();
+	// The number of the last frame handed out.
+	private long position = -1;
+	// Whether the current draw has had its new frame.
+	private boolean tickOpen = false;
+
+	@Override
+	public boolean isConnected() {
+		return true;
+	}
+
+	@Override
+	public FrameSnapshot frame() {
+		if (!tickOpen)
+			generate(++position, current);
+		// frame() ends the draw; the next call starts a new one.
+		tickOpen = false;
+		return current;
+	}
+
+	@Override
+	public FrameSnapshot nextFrame() {
+		if (tickOpen)
+			return null;
+		tickOpen = true;
+		generate(++position, current);
+		return current;
+	}
+
+	@Override
+	public FrameSnapshot frame(int history) {
+		if (position < 0 || history < 0 || history > position)
+			return null;
+		if (history == 0)
+			return current;
+		generate(position - history, this.history);
+		return this.history;
+	}
+
+	@Override
+	public void enableGesture(int gestureType) {
+		// There are no device gestures; GestureEngine recognizes them from the motion.
+	}
+
+	@Override
+	public void close() {
+
+	}
+
+	/**
+	 * Fill a snapshot with frame number n.
+	 */
+	private static void generate(long n, FrameSnapshot frame) {
+		float t = n / FRAMES_PER_SECOND;
+		frame.reset();
+		frame.setFrame(n + 1, (long) (t * 1000000), FRAMES_PER_SECOND);
+		frame.setInteractionBox(0, 200, 0, 235, 235, 147);
+		addHand(frame, LEFT_HAND_ID, -90 + 50 * wave(t, 5), 200 + 90 * wave(t, 3), 40 * wave(t, 7), 1);
+		int rightFingers = 1 + (int) (t / 2) % 3;
+		addHand(frame, RIGHT_HAND_ID, 90 + 50 * wave(t + 1, 4), 200 + 90 * wave(t + 1, 6), 40 * wave(t + 1, 8), rightFingers);
+	}
+
+	private static void addHand(FrameSnapshot frame, int handId, float palmX, float palmY, float palmZ, int fingers) {
+		int hand = frame.addHand(handId, palmX, palmY, palmZ);
+		for (int f = 0; f < fingers; f++) {
+			float spread = (f - (fingers - 1) / 2f) * FINGER_SPREAD;
+			// Point forward, and a little towards where the hand is in the box, so the directions move too.
+			float dirX = palmX / 300 + spread / 200;
+			float dirY = (palmY - 200) / 300;
+			float dirZ = -1;
+			float length = (float) Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+			frame.addPointable(handId * 10 + f, hand, false, palmX + spread, palmY + 20, palmZ - FINGER_LENGTH, dirX / length, dirY / length, dirZ
+					/ length);
+		}
+	}
+
+	/**
+	 * @return A sine wave from -1 to 1 with a period in seconds.
+	 */
+	private static float wave(float t, float period) {
+		return (float) Math.sin(2 * Math.PI * t / period);
+	}
+}
@@ -0,0 +1,264 @@
+package util;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * A trail of dots that fade out as newer ones are added, kept in a fixed-capacity ring buffer and drawn into an offscreen layer.
+ *
+ * Each dot is stamped into the layer once, when it is added. The layer remembers, per pixel, which dot covered it last, so update() can fade
+ * the whole trail in one pass over the pixels the trail still covers, setting each from the age of its dot: a dot's alpha falls linearly from
+ * full when it is added to nothing once the length of the trail in dots has been added after it. The cost of a frame depends on the area of
+ * the trail on screen and the size of the new dots, not on the length of the trail.
+ *
+ * Draw getImage() over the background after update() to show the trail.
+ */
+public class TrailBuffer {
+	private final int width;
+	private final int height;
+	private final PImage image;
+
+	// The ring buffer of dots. The newest is at head - 1.
+	private final int capacity;
+	private final float[] xs;
+	private final float[] ys;
+	private final float[] radii;
+	private int head = 0;
+	private int count = 0;
+	// The sequence number of the newest dot. Dots are numbered from 1 as they are added.
+	private int sequence = 0;
+	private int length;
+	// The alpha of a dot by age, from 255 at age 0 down to 0 at age length.
+	private final int[] alphas;
+
+	// Per pixel: the sequence number of the dot that covered it last (0 for none), its color (RGB) and how much of the pixel it covered.
+	private final int[] pixelSequences;
+	private final int[] pixelColors;
+	private final byte[] pixelCoverage;
+	// The bounds of the pixels covered by the trail, empty if minX > maxX.
+	private int minX, minY, maxX, maxY;
+
+	/**
+	 * @param pApplet
+	 * @param width
+	 * @param height
+	 * @param capacity
+	 *            The most dots the trail can hold, and so its longest length.
+	 * @throws IllegalArgumentException
+	 */
+	public TrailBuffer(PApplet pApplet, int width, int height, int capacity) throws IllegalArgumentException {
+		if (width < 1 || height < 1 || capacity < 1)
+			throw new IllegalArgumentException("Invalid trail parameters. Given: width=" + width + ", height=" + height + ", capacity=" + capacity);
+		this.width = width;
+		this.height = height;
+		image = pApplet.createImage(width, height, PApplet.ARGB);
+		image.loadPixels();
+		this.capacity = capacity;
+		xs = new float[capacity];
+		ys = new float[capacity];
+		radii = new float[capacity];
+		alphas = new int[capacity + 1];
+		setLength(capacity);
+		pixelSequences = new int[width * height];
+		pixelColors = new int[width * height];
+		pixelCoverage = new byte[width * height];
+		resetBounds();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Set how many dots the trail shows. Dots still in the buffer come back if the trail is made longer again.
+	 *
+	 * @param length
+	 *            From 1 to the capacity.
+	 * @throws IllegalArgumentException
+	 */
+	public void setLength(int length) throws IllegalArgumentException {
+		if (length < 1 || length > capacity)
+			throw new IllegalArgumentException("Length must be from 1 to " + capacity + ". Given: " + length);
+		if (length > this.length) {
+			// Pixels that faded out under the old length may be in the trail again.
+			minX = 0;
+			minY = 0;
+			maxX = width - 1;
+			maxY = height - 1;
+		}
+		this.length = length;
+		for (int age = 0; age <= capacity; age++)
+			alphas[age] = age < length ? 255 * (length - age) / length : 0;
+	}
+
+	/**
+	 * @return The number of dots in the trail, at most its length.
+	 */
+	public int size() {
+		return Math.min(count, length);
+	}
+
+	/**
+	 * @param age
+	 *            0 for the newest dot, up to size() - 1 for the oldest.
+	 * @return The x of the dot.
+	 * @throws IllegalArgumentException
+	 */
+	public float getX(int age) throws IllegalArgumentException {
+		return xs[index(age)];
+	}
+
+	public float getY(int age) throws IllegalArgumentException {
+		return ys[index(age)];
+	}
+
+	public float getRadius(int age) throws IllegalArgumentException {
+		return radii[index(age)];
+	}
+
+	/**
+	 * @return The trail as of the last update(). Do not modify it.
+	 */
+	public PImage getImage() {
+		return image;
+	}
+
+	/**
+	 * Add a dot to the trail, pushing out the oldest one if the buffer is full. The edge is anti-aliased over one pixel.
+	 *
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param rgb
+	 */
+	public void add(float x, float y, float radius, int[] rgb) {
+		int color = ((rgb[0] & 0xff) << 16) | ((rgb[1] & 0xff) << 8) | (rgb[2] & 0xff);
+		xs[head] = x;
+		ys[head] = y;
+		radii[head] = radius;
+		head = (head + 1) % capacity;
+		count = Math.min(count + 1, capacity);
+		sequence++;
+		stamp(x, y, radius, color);
+	}
+
+	/**
+	 * Fade the trail by the dots added since the last update and bring the image up to date. Call once per frame, before drawing getImage().
+	 */
+	public void update() {
+		if (minX > maxX)
+			return;
+		int[] pixels = image.pixels;
+		int liveMinX = width, liveMinY = height, liveMaxX = -1, liveMaxY = -1;
+		for (int py = minY; py <= maxY; py++) {
+			int row = py * width;
+			boolean rowLive = false;
+			for (int px = minX; px <= maxX; px++) {
+				int i = row + px;
+				int pixelSequence = pixelSequences[i];
+				int age = sequence - pixelSequence;
+				if (pixelSequence == 0 || age >= length) {
+					pixels[i] = 0;
+					continue;
+				}
+				int alpha = alphas[age] * (pixelCoverage[i] & 0xff) / 255;
+				pixels[i] = (alpha << 24) | pixelColors[i];
+				rowLive = true;
+				liveMinX = Math.min(liveMinX, px);
+				liveMaxX = Math.max(liveMaxX, px);
+			}
+			if (rowLive) {
+				liveMinY = Math.min(liveMinY, py);
+				liveMaxY = py;
+			}
+		}
+		image.updatePixels(minX, minY, maxX - minX + 1, maxY - minY + 1);
+		// The pixels that faded out have been cleared, so the next pass only needs to cover what is left.
+		minX = liveMinX;
+		minY = liveMinY;
+		maxX = liveMaxX;
+		maxY = liveMaxY;
+	}
+
+	/**
+	 * Remove all dots. The image is cleared by the next update().
+	 */
+	public void clear() {
+		head = 0;
+		count = 0;
+		// Age every pixel past the longest length, rather than clearing them.
+		sequence += capacity + 1;
+	}
+
+	private void stamp(float x, float y, float radius, int color) {
+		int x0 = Math.max(0, (int) Math.floor(x - radius - 1));
+		int y0 = Math.max(0, (int) Math.floor(y - radius - 1));
+		int x1 = Math.min(width - 1, (int) Math.ceil(x + radius + 1));
+		int y1 = Math.min(height - 1, (int) Math.ceil(y + radius + 1));
+		if (x0 > x1 || y0 > y1)
+			return;
+
+		float inner = Math.max(0, radius - 0.5f);
+		float innerSq = inner * inner;
+		float outer = radius + 0.5f;
+		float outerSq = outer * outer;
+		for (int py = y0; py <= y1; py++) {
+			float dy = py + 0.5f - y;
+			int row = py * width;
+			for (int px = x0; px <= x1; px++) {
+				float dx = px + 0.5f - x;
+				float distSq = dx * dx + dy * dy;
+				if (distSq >= outerSq)
+					continue;
+				int i = row + px;
+				int c = distSq <= innerSq ? 255 : (int) ((outer - (float) Math.sqrt(distSq)) * 255);
+				if (c == 0)
+					continue;
+				int oldCoverage = pixelCoverage[i] & 0xff;
+				if (c < 255 && pixelSequences[i] != 0 && sequence - pixelSequences[i] < length) {
+					// An edge over an older dot: mix the colors so the older dot does not show a gap around the new one.
+					pixelColors[i] = blend(pixelColors[i], color, c);
+					pixelCoverage[i] = (byte) Math.max(c, oldCoverage);
+				} else {
+					pixelColors[i] = color;
+					pixelCoverage[i] = (byte) c;
+				}
+				pixelSequences[i] = sequence;
+			}
+		}
+		minX = Math.min(minX, x0);
+		minY = Math.min(minY, y0);
+		maxX = Math.max(maxX, x1);
+		maxY = Math.max(maxY, y1);
+	}
+
+	private int index(int age) throws IllegalArgumentException {
+		if (age < 0 || age >= size())
+			throw new IllegalArgumentException("Age must be from 0 to " + (size() - 1) + ". Given: " + age);
+		return (head - 1 - age + capacity) % capacity;
+	}
+
+	private void resetBounds() {
+		minX = width;
+		minY = height;
+		maxX = -1;
+		maxY = -1;
+	}
+
+	/**
+	 * @return The first color mixed with the second by amount / 255.
+	 */
+	private static int blend(int first, int second, int amount) {
+		int r = (first >> 16) & 0xff;
+		int g = (first >> 8) & 0xff;
+		int b = first & 0xff;
+		r += (((second >> 16) & 0xff) - r) * amount / 255;
+		g += (((second >> 8) & 0xff) - g) * amount / 255;
+		b += ((second & 0xff) - b) * amount / 255;
+		return (r << 16) | (g << 8) | b;
+	}
+}
@@ -7,18 +7,16 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import processing.core.PApplet;
+import util.AudioSnapshot;
+import util.FrameSnapshot;
+import util.FrameSource;
+import util.MinimUtil;
+import util.GestureBus;
+import util.GestureEngine;
+import util.Hud;
+import util.LeapMotionUtil;
 import util.ShapeUtil;
 
-import com.leapmotion.leap.CircleGesture;
-import com.leapmotion.leap.Controller;
-import com.leapmotion.leap.Frame;
-import com.leapmotion.leap.Gesture;
-import com.leapmotion.leap.Pointable;
-import com.leapmotion.leap.Gesture.State;
-import com.leapmotion.leap.ScreenTapGesture;
-import com.leapmotion.leap.SwipeGesture;
-import com.leapmotion.leap.Vector;
-
 import ddf.minim.*;
 import ddf.minim.effects.*;
 
@@ -27,8 +25,15 @@ public class BandPassFilterMusicPlayer extends PApplet {
 	private final static Logger LOGGER = Logger.getLogger(BandPassFilterMusicPlayer.class.getName() + "Logger");
 	private final static int WINDOW_WIDTH = 1000;
 	private final static int WINDOW_HEIGHT = 667;
+	private final static int[] WAVEFORM_RGB = new int[] { 255, 255, 255 };
 
-	private static Controller lmController;
+	private static FrameSource frameSource;
+	private static GestureEngine gestureEngine = new GestureEngine();
+	private static GestureBus gestureBus = new GestureBus();
+	// The frame being drawn, for the gesture handlers.
+	private static FrameSnapshot currentFrame;
+	private static Hud hud;
+	private static int titleField;
 	private static float centerX;
 	private static float centerY;
 	private static float projectionMultiplier = 1f;
@@ -38,6 +43,7 @@ public class BandPassFilterMusicPlayer extends PApplet {
 	private static float radiusMax = 50f;
 	private static Minim minim;
 	private static AudioPlayer audioPlayer;
+	private static AudioSnapshot audioSnapshot;
 	private static AudioMetaData meta;
 	private static BandPass bpf;
 	private static String assetPath = System.getProperty("user.dir") + File.separator + "assets" + File.separator;
@@ -65,12 +71,14 @@ public class BandPassFilterMusicPlayer extends PApplet {
 
 		try {
 			// Disable window resizing.
-			findFrame().setResizable(false);
+			ShapeUtil.setResizable(this, false);
 
 			minim = new Minim(this);
 			// TODO: Load an audio file (make this interactive?).
 			// Specify 512 for the length of the sample buffers (the default buffer size is 1024).
 			audioPlayer = minim.loadFile(audioFilePath, 512);
+			audioSnapshot = new AudioSnapshot(audioPlayer.bufferSize());
+			audioPlayer.addListener(audioSnapshot);
 			audioPlayer.loop();
 			audioPlayer.printControls();
 			/*
@@ -96,20 +104,25 @@ public class BandPassFilterMusicPlayer extends PApplet {
 
 			// Get the metadata.
 			meta = audioPlayer.getMetaData();
+			// The title is set once, here.
+			float titleY = centerY - 50;
+			hud = new Hud(this, (int) centerX - 300, (int) titleY - 20, 600, 25);
+			titleField = hud.addField("Title: ", "", 0, centerX, titleY, CENTER);
+			hud.setText(titleField, meta.title());
 			
-			// Instantiate the Leap Motion controller.
-			lmController = new Controller();
+			// Open the Leap Motion frame source.
+			frameSource = LeapMotionUtil.openFrameSource();
 
 			// Set gestures to track.
-			//lmController.enableGesture(Gesture.Type.TYPE_SCREEN_TAP);
-			lmController.enableGesture(Gesture.Type.TYPE_CIRCLE);
-			lmController.enableGesture(Gesture.Type.TYPE_SWIPE);
+			//gestureEngine.enableGesture(FrameSnapshot.GESTURE_SCREEN_TAP);
+			gestureEngine.enableGesture(FrameSnapshot.GESTURE_CIRCLE);
+			gestureEngine.enableGesture(FrameSnapshot.GESTURE_SWIPE);
 			
-			// Set screen tap config.
-			if (lmController.config().setFloat("Gesture.ScreenTap.MinForwardVelocity", 50.0f)
-					&& lmController.config().setFloat("Gesture.ScreenTap.HistorySeconds", .1f)
-					&& lmController.config().setFloat("Gesture.ScreenTap.MinDistance", 3.0f))
-				lmController.config().save();
+			// Set screen tap thresholds.
+			gestureEngine.setTapMinVelocity(50.0f);
+			gestureEngine.setTapHistorySeconds(.1f);
+			gestureEngine.setTapMinDistance(3.0f);
+			addGestureHandlers();
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -122,46 +135,37 @@ public class BandPassFilterMusicPlayer extends PApplet {
 
 	public void draw() {
 		background(0);
-		String titleText = "Title: " + meta.title();
 		int waveformMultiplier = 100;
 		float waveformXOffest = centerX - audioPlayer.bufferSize() / 2;
 		float waveformYOffest = centerY - waveformMultiplier / 2;
 		float leftRightSpread = waveformMultiplier * 2;
-		float titleXOffset = 0;
-		float titleYOffset = -waveformMultiplier / 2;
-		text(titleText, centerX - textWidth(titleText) / 2 + titleXOffset, centerY + titleYOffset);
+		hud.draw();
 
-		/*
-		 * We draw the waveform by connecting neighbor values with a line/ We multiply each of the values by 50 because the values in the buffers are
-		 * normalized. This means that they have values between -1 and 1. If we don't scale them up our waveform will look more or less like a
-		 * straight line.
-		 * 
-		 * Source: http://code.compartmental.net/tools/minim/quickstart/
-		 */
-		stroke(255);
-		for (int i = 0; i < audioPlayer.bufferSize() - 1; i++) {
-			line(waveformXOffest + i, waveformMultiplier + audioPlayer.left.get(i) * waveformMultiplier + waveformYOffest, i + 1 + waveformXOffest,
-					waveformMultiplier + audioPlayer.left.get(i + 1) * waveformMultiplier + waveformYOffest);
-			line(waveformXOffest + i, leftRightSpread + audioPlayer.right.get(i) * waveformMultiplier + waveformYOffest, i + 1 + waveformXOffest,
-					leftRightSpread + audioPlayer.right.get(i + 1) * waveformMultiplier + waveformYOffest);
-		}
+		audioSnapshot.update();
+		MinimUtil.drawWaveform(this, audioSnapshot, waveformMultiplier, waveformXOffest, waveformYOffest, leftRightSpread, WAVEFORM_RGB, 1);
+
+		if (frameSource.isConnected()) {
+			// Taps only show up in a single device frame, so post every frame since the last draw.
+			FrameSnapshot newFrame;
+			while ((newFrame = frameSource.nextFrame()) != null)
+				gestureBus.post(gestureEngine.process(newFrame));
 
-		if (lmController.isConnected()) {
-			Frame frame = lmController.frame();
-			LOGGER.fine("FPS: " + frame.currentFramesPerSecond());
+			FrameSnapshot frame = gestureEngine.process(frameSource.frame());
+			gestureBus.post(frame);
+			LOGGER.fine("FPS: " + frame.getFramesPerSecond());
 
-			Pointable foremost = frame.pointables().frontmost();
-			if (foremost.isValid()) {
-				Vector direction = foremost.direction();
-				Vector projectedDirection = direction.times(projectionMultiplier);
+			int foremost = frame.frontmost();
+			if (foremost >= 0) {
+				float projectedX = frame.getDirectionX(foremost) * projectionMultiplier;
+				float projectedY = frame.getDirectionY(foremost) * projectionMultiplier;
 
 				// Center x axis around center of window.
-				float x = centerX + projectedDirection.getX() * xyMultiplier;
+				float x = centerX + projectedX * xyMultiplier;
 				// Center y axis around center of window. Negative since
 				// coordinate system is different.
-				float y = centerY - projectedDirection.getY() * xyMultiplier;
+				float y = centerY - projectedY * xyMultiplier;
 				// Radius is based on how close the pointer is, with closer values being more negative. Note the lower cap on radius.
-				float z = foremost.tipPosition().getZ();
+				float z = frame.getTipZ(foremost);
 				//float radius = z < radiusMin ? radiusMin : -z * radiusMultiplier;
 				float radius;
 				if (z < radiusMin)
@@ -177,7 +181,7 @@ public class BandPassFilterMusicPlayer extends PApplet {
 				// Map the pointer position to the range [100, 10000], an arbitrary range of passBand frequencies
 				// Make sure x isn't zero.
 				float passBand = map(x > 0 ? x : 1, 1, width, 100, 2000);
-				//float passBand = map(lmController.frame().interactionBox().normalizePoint(projectedDirection).getX(), 0, 1, 100, 10000);
+				//float passBand = map(LeapMotionUtil.normalizePoint(frame, projectedX, projectedY, 0).x, 0, 1, 100, 10000);
 				bpf.setFreq(passBand);
 				//float bandWidth = map(y, 0, height, 50, 500);
 				float bandWidth = map(radius, radiusMin, radiusMax, 50, 500);
@@ -190,59 +194,53 @@ public class BandPassFilterMusicPlayer extends PApplet {
 			
 			//normalizeGain();
 			
-			for (Gesture gesture : frame.gestures()) {
-				switch (gesture.type()) {
-				case TYPE_CIRCLE:
-					LOGGER.info("Circle gesture detected.");
-					CircleGesture circle = new CircleGesture(gesture);
-					// Calculate clock direction using the angle between circle normal and pointable.
-					String clockwiseness;
-					if (circle.pointable().direction().angleTo(circle.normal()) <= Math.PI / 4) {
-						// Clockwise if angle is less than 90 degrees.
-						clockwiseness = "clockwise";
-						raiseVolume();
-					} else {
-						clockwiseness = "counterclockwise";
-						lowerVolume();
-					}
+			// Act on the gestures posted since the last draw.
+			currentFrame = frame;
+			gestureBus.dispatch();
+		}
+	}
 
-					// Calculate angle swept since last frame
-					double sweptAngle = 0;
-					if (circle.state() != State.STATE_START) {
-						CircleGesture previousUpdate = new CircleGesture(lmController.frame(1).gesture(circle.id()));
-						sweptAngle = (circle.progress() - previousUpdate.progress()) * 2 * Math.PI;
-					}
+	/**
+	 * Register what each gesture does. Circles change the volume, swipes pan and screen taps toggle play.
+	 */
+	private void addGestureHandlers() {
+		gestureBus.addHandler(FrameSnapshot.GESTURE_CIRCLE, new GestureBus.Adapter() {
+			@Override
+			public void start(GestureBus.Event event) {
+				LOGGER.info("Circle gesture detected.");
+			}
 
-					//LOGGER.info("Circle id: " + circle.id() + ", " + circle.state() + ", progress: " + circle.progress() + ", radius: "
-					//		+ circle.radius() + ", angle: " + Math.toDegrees(sweptAngle) + ", " + clockwiseness);
-					break;
-				case TYPE_SWIPE:
-					LOGGER.info("Swipe gesture detected.");
-					SwipeGesture swipe = new SwipeGesture(gesture);
-					pan(swipe.position());
-					//System.out.println("Swipe id: " + swipe.id() + ", " + swipe.state() + ", position: " + swipe.position() + ", direction: "
-					//		+ swipe.direction() + ", speed: " + swipe.speed());
-					break;
-				case TYPE_SCREEN_TAP:
-					LOGGER.info("Screen tap gesture detected.");
-					ScreenTapGesture screenTap = new ScreenTapGesture(gesture);
-					//System.out.println("Screen Tap id: " + screenTap.id() + ", " + screenTap.state() + ", position: " + screenTap.position()
-					//		+ ", direction: " + screenTap.direction());
-					togglePlay();
-					break;
-				case TYPE_KEY_TAP:
-					LOGGER.info("Key tap gesture detected.");
-					/*
-					 * KeyTapGesture keyTap = new KeyTapGesture(gesture); System.out.println("Key Tap id: " + keyTap.id() + ", " + keyTap.state() +
-					 * ", position: " + keyTap.position() + ", direction: " + keyTap.direction());
-					 */
-					break;
-				default:
-					LOGGER.info("Unknown gesture detected.");
-					break;
-				}
+			@Override
+			public void update(GestureBus.Event event) {
+				// Clock direction is calculated using the angle between circle normal and pointable.
+				if (event.isClockwise())
+					raiseVolume();
+				else
+					lowerVolume();
+				//LOGGER.info("Circle id: " + event.getId() + ", progress: " + event.getProgress() + ", angle: " + Math.toDegrees(event.getSweptAngle()));
 			}
-		}
+		});
+		gestureBus.addHandler(FrameSnapshot.GESTURE_SWIPE, new GestureBus.Adapter() {
+			@Override
+			public void stop(GestureBus.Event event) {
+				LOGGER.info("Swipe gesture detected.");
+				pan(currentFrame, event.getX(), event.getY(), event.getZ());
+				//System.out.println("Swipe id: " + event.getId() + ", direction x: " + event.getDirectionX());
+			}
+		});
+		gestureBus.addHandler(FrameSnapshot.GESTURE_SCREEN_TAP, new GestureBus.Adapter() {
+			@Override
+			public void stop(GestureBus.Event event) {
+				LOGGER.info("Screen tap gesture detected.");
+				togglePlay();
+			}
+		});
+		gestureBus.addHandler(FrameSnapshot.GESTURE_KEY_TAP, new GestureBus.Adapter() {
+			@Override
+			public void stop(GestureBus.Event event) {
+				LOGGER.info("Key tap gesture detected.");
+			}
+		});
 	}
 
 	// TODO: Get this to work.
@@ -287,8 +285,8 @@ public class BandPassFilterMusicPlayer extends PApplet {
 		audioPlayer.setGain(audioPlayer.getGain() - 1);
 	}
 
-	private void pan(Vector pt) {
-		float xMapped = map(lmController.frame().interactionBox().normalizePoint(pt).getX(), 0, 1, -1, 1);
+	private void pan(FrameSnapshot frame, float x, float y, float z) {
+		float xMapped = map(LeapMotionUtil.normalizePoint(frame, x, y, z).x, 0, 1, -1, 1);
 		LOGGER.info("Pan() called with current PAN = " + audioPlayer.getPan() + " and new PAN = " + xMapped);
 		audioPlayer.setPan(xMapped);
 	}
@@ -316,6 +314,8 @@ public class BandPassFilterMusicPlayer extends PApplet {
 		// Close and stop stuff.
 		audioPlayer.close();
 		minim.stop();
+		if (frameSource != null)
+			frameSource.close();
 	}
 
 	public void stop() {
@@ -327,16 +327,4 @@ public class BandPassFilterMusicPlayer extends PApplet {
 		cleanup();
 		super.exit();
 	}
-
-	/**
-	 * Get the current frame. (A hack for Eclipse from https://forum.processing.org/topic/trying-to-use-processing-in-eclipse).
-	 * 
-	 * @return
-	 */
-	private java.awt.Frame findFrame() {
-		java.awt.Container f = this.getParent();
-		while (!(f instanceof java.awt.Frame) && f != null)
-			f = f.getParent();
-		return (java.awt.Frame) f;
-	}
 }
@@ -7,16 +7,15 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import processing.core.*;
+import util.FrameGovernor;
+import util.FrameHistory;
+import util.FrameSnapshot;
+import util.FrameSource;
+import util.GestureEngine;
 import util.LeapMotionUtil;
+import util.PointerPredictor;
 import util.ShapeUtil;
 
-import com.leapmotion.leap.Controller;
-import com.leapmotion.leap.Frame;
-import com.leapmotion.leap.Gesture;
-import com.leapmotion.leap.Pointable;
-import com.leapmotion.leap.SwipeGesture;
-import com.leapmotion.leap.Vector;
-
 /**
  * Sources: http://processing.org/tutorials/transform2d/ http://processing.org/tutorials/p3d/
  * 
@@ -34,9 +33,20 @@ public class Explore3D extends PApplet {
 	private final static int SHAPE_COUNT = 2;
 	private final static float SWIPE_X_THESHOLD = 0.5f;
 	private final static float GLOBE_ROTATION_MULTIPLIER = 0.00005f;
+	private final static int HISTORY_FRAMES = 64;
+	private final static float TARGET_FPS = 30;
 
 	// Global variables:
-	private static Controller lmController;
+	private static FrameSource frameSource;
+	// Hold the frame rate on slower machines by capping the sphere detail.
+	private static FrameGovernor governor = new FrameGovernor(TARGET_FPS);
+	private static GestureEngine gestureEngine = new GestureEngine();
+	private static FrameHistory frameHistory = new FrameHistory(HISTORY_FRAMES);
+	private static float[] pointerVelocity = new float[3];
+	// Draw the pointer where it will be when the frame is on screen, not where it was when the device saw it.
+	private static PointerPredictor predictor = new PointerPredictor();
+	private static FrameSnapshot predicted = new FrameSnapshot();
+	private static long lastGestureFrameId = -1;
 	private static float xmag, ymag = 0;
 	private static float newXmag, newYmag = 0;
 	private static float pointerX = 0;
@@ -53,6 +63,11 @@ public class Explore3D extends PApplet {
 	private static PImage bg;
 	private static PImage texmap;
 	private static int sDetail = 35; // Sphere detail setting
+	// Sphere levels of detail, and the radius on screen in pixels from which each is used.
+	private final static int[] SPHERE_LOD_DETAILS = { 12, 24, 35, 60, 96 };
+	private final static float[] SPHERE_LOD_RADII = { 0, 80, 160, 320, 560 };
+	// How far past a threshold, as a fraction of it, the radius must go before the level changes, so it does not flip back and forth.
+	private final static float SPHERE_LOD_HYSTERESIS = 0.15f;
 	private static float rotationX = 0;
 	private static float rotationY = 0;
 	private static float velocityX = 0;
@@ -60,6 +75,13 @@ public class Explore3D extends PApplet {
 	private static float globeRadius = 400;
 	private static float pushBack = 0;
 	private static float[] cx, cz, sphereX, sphereY, sphereZ;
+	// The sphere mesh of each level of detail, and what they were built with.
+	private static PShape[] globeShapes;
+	private static float globeShapeRadius;
+	private static PImage globeShapeTexture;
+	private static int globeLevel = 2;
+	// The most detailed level the governor allows.
+	private static int globeLevelMax = SPHERE_LOD_DETAILS.length - 1;
 	private static float sinLUT[];
 	private static float cosLUT[];
 	private static float SINCOS_PRECISION = 0.5f;
@@ -88,20 +110,30 @@ public class Explore3D extends PApplet {
 
 		try {
 			// Disable window resizing.
-			ShapeUtil.findFrame(this).setResizable(false);
+			ShapeUtil.setResizable(this, false);
 
 			// Globe:
 			texmap = loadImage(globeImgPath);
-			initializeSphere(sDetail);
+			governor.addKnob(new FrameGovernor.Knob() {
+				@Override
+				public int getLevelCount() {
+					return SPHERE_LOD_DETAILS.length;
+				}
+
+				@Override
+				public void setLevel(int level) {
+					globeLevelMax = level;
+				}
+			});
+			governor.register(this);
 
-			// Instantiate the Leap Motion controller.
-			lmController = new Controller();
+			// Open the Leap Motion frame source.
+			frameSource = LeapMotionUtil.openFrameSource();
 
 			// Set gestures to track.
-			lmController.enableGesture(Gesture.Type.TYPE_SWIPE);
-			if (lmController.config().setFloat("Gesture.Swipe.MinLength", 400.0f)
-					&& lmController.config().setFloat("Gesture.Swipe.MinVelocity", 100f))
-				lmController.config().save();
+			gestureEngine.enableGesture(FrameSnapshot.GESTURE_SWIPE);
+			gestureEngine.setSwipeMinLength(400.0f);
+			gestureEngine.setSwipeMinVelocity(100f);
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -118,43 +150,45 @@ public class Explore3D extends PApplet {
 		 */
 		background(0.5f);
 
-		if (lmController.isConnected()) {
-			Frame frame = lmController.frame();
-			Frame pFrame = lmController.frame(-1);
-			LOGGER.fine("FPS: " + frame.currentFramesPerSecond());
+		if (frameSource.isConnected()) {
+			// Look at every device frame since the last draw so no swipe is missed.
+			FrameSnapshot newFrame;
+			while ((newFrame = frameSource.nextFrame()) != null) {
+				newFrame = gestureEngine.process(newFrame);
+				frameHistory.add(newFrame);
+				predictor.update(newFrame);
+				handleGestures(newFrame);
+			}
 
-			Pointable foremost = frame.pointables().frontmost();
-			if (foremost.isValid() && frame.hands().count() == 1) {
+			// The latest frame can be newer than the last one drained, if the device published it since.
+			FrameSnapshot frame = gestureEngine.process(frameSource.frame());
+			frameHistory.add(frame);
+			predictor.update(frame);
+			handleGestures(frame);
+			predictor.predict(frame, predicted);
+			frame = predicted;
+			LOGGER.fine("FPS: " + frame.getFramesPerSecond());
+
+			int foremost = frame.frontmost();
+			if (foremost >= 0 && frame.getHandCount() == 1) {
 				if (mousePressed || disableMouse) {
 
-					Vector translatedPosition = LeapMotionUtil.leapToProcessingVector(this, lmController, foremost.tipPosition());
-					pointerX = translatedPosition.getX();
-					pointerY = translatedPosition.getY();
-					pointerZ = translatedPosition.getZ();
-
-					// Previous frame.
-					if (pFrame.isValid()) {
-						Vector pTranslatedPosition = LeapMotionUtil.leapToProcessingVector(this, lmController, pFrame.pointables().frontmost()
-								.tipPosition());
-						pPointerX = pTranslatedPosition.getX();
-						pPointerY = pTranslatedPosition.getY();
-						pPointerZ = pTranslatedPosition.getZ();
-					}
-				}
-			}
-
-			for (Gesture gesture : frame.gestures()) {
-				if (gesture.type() == Gesture.Type.TYPE_SWIPE) {
-					LOGGER.info("Swipe gesture detected.");
-					SwipeGesture swipe = new SwipeGesture(gesture);
-					if (swipe.direction().getX() > SWIPE_X_THESHOLD) {
-						// Swiped right.
-						incrementShape();
-					} else if (swipe.direction().getX() < -SWIPE_X_THESHOLD) {
-						// Swiped left.
-						decrementShape();
+					PVector translatedPosition = LeapMotionUtil.leapToProcessingVector(this, frame, foremost);
+					pointerX = translatedPosition.x;
+					pointerY = translatedPosition.y;
+					pointerZ = translatedPosition.z;
+
+					// Where the pointer was one draw ago, from its velocity over the device timestamps rather than from whichever frame happened to
+					// be current at the last draw.
+					if (frameHistory.getVelocity(frame.getPointableId(foremost), pointerVelocity)) {
+						float drawSeconds = 1 / frameRate;
+						pPointerX = pointerX - pointerVelocity[0] / frame.getBoxWidth() * width * drawSeconds;
+						pPointerY = pointerY + pointerVelocity[1] / frame.getBoxHeight() * height * drawSeconds;
+						pPointerZ = pointerZ - pointerVelocity[2] / frame.getBoxDepth() * drawSeconds;
 					} else {
-						LOGGER.info("NOT SURE HOW WE GOT HERE.");
+						pPointerX = pointerX;
+						pPointerY = pointerY;
+						pPointerZ = pointerZ;
 					}
 				}
 			}
@@ -170,6 +204,29 @@ public class Explore3D extends PApplet {
 		}
 	}
 
+	private void handleGestures(FrameSnapshot frame) {
+		// process() gives back the same gestures for a frame it has already seen, so handle each frame once.
+		if (frame.getId() == lastGestureFrameId)
+			return;
+		lastGestureFrameId = frame.getId();
+
+		for (int i = 0; i < frame.getGestureCount(); i++) {
+			// Every frame is seen now, so act once per swipe, when it ends.
+			if (frame.getGestureType(i) == FrameSnapshot.GESTURE_SWIPE && frame.getGestureState(i) == FrameSnapshot.STATE_STOP) {
+				LOGGER.info("Swipe gesture detected.");
+				if (frame.getGestureDirectionX(i) > SWIPE_X_THESHOLD) {
+					// Swiped right.
+					incrementShape();
+				} else if (frame.getGestureDirectionX(i) < -SWIPE_X_THESHOLD) {
+					// Swiped left.
+					decrementShape();
+				} else {
+					LOGGER.info("NOT SURE HOW WE GOT HERE.");
+				}
+			}
+		}
+	}
+
 	public void keyPressed() {
 		switch (key) {
 		case 'm':
@@ -345,6 +402,10 @@ public class Explore3D extends PApplet {
 	private void renderGlobe(float x, float y, float z, float px, float py, float pz) {
 		pushMatrix();
 		translate(width * 0.33f, height * 0.5f, pushBack);
+		// Control scaling with the z coordinate (with lower zoom limit), as for the cube.
+		scale(z < SCALE_MIN ? SCALE_MIN : z);
+		// Pixels per unit on screen, measured before the globe is rotated.
+		float screenScale = dist(screenX(0, 0, 0), screenY(0, 0, 0), screenX(1, 0, 0), screenY(1, 0, 0));
 		pushMatrix();
 		noFill();
 		stroke(255, 200);
@@ -358,7 +419,7 @@ public class Explore3D extends PApplet {
 		fill(200);
 		noStroke();
 		textureMode(IMAGE);
-		texturedSphere(globeRadius, texmap);
+		texturedSphere(globeRadius, texmap, screenScale);
 		popMatrix();
 		popMatrix();
 		rotationX += velocityX;
@@ -378,22 +439,69 @@ public class Explore3D extends PApplet {
 	}
 
 	// Generic routine to draw textured sphere
-	private void texturedSphere(float r, PImage t) {
-		int v1, v11, v2;
+	private void texturedSphere(float r, PImage t, float screenScale) {
 		r = (r + 240) * 0.33f;
-		beginShape(TRIANGLE_STRIP);
-		texture(t);
+		// The geometry only changes with the radius or texture, so build every level once and let the renderer keep them.
+		if (globeShapes == null || globeShapeRadius != r || globeShapeTexture != t) {
+			globeShapes = new PShape[SPHERE_LOD_DETAILS.length];
+			for (int level = 0; level < SPHERE_LOD_DETAILS.length; level++) {
+				initializeSphere(SPHERE_LOD_DETAILS[level]);
+				globeShapes[level] = createTexturedSphere(r, t);
+			}
+			globeShapeRadius = r;
+			globeShapeTexture = t;
+		}
+
+		globeLevel = selectSphereLevel(globeLevel, r * screenScale);
+		shape(globeShapes[Math.min(globeLevel, globeLevelMax)]);
+	}
+
+	/**
+	 * Pick the sphere level of detail for a radius on screen. The level only changes once the radius is SPHERE_LOD_HYSTERESIS past the
+	 * threshold, so zooming around a threshold does not make the sphere pop between levels.
+	 * 
+	 * @param level
+	 *            The level in use.
+	 * @param projectedRadius
+	 *            In pixels.
+	 * @return
+	 */
+	private int selectSphereLevel(int level, float projectedRadius) {
+		while (level < SPHERE_LOD_RADII.length - 1 && projectedRadius > SPHERE_LOD_RADII[level + 1] * (1 + SPHERE_LOD_HYSTERESIS))
+			level++;
+		while (level > 0 && projectedRadius < SPHERE_LOD_RADII[level] * (1 - SPHERE_LOD_HYSTERESIS))
+			level--;
+		return level;
+	}
+
+	/**
+	 * Build the sphere from the vertex list made by initializeSphere(), as a group of triangle strips: the southern cap, the middle rings and
+	 * the northern cap.
+	 * 
+	 * @param r
+	 * @param t
+	 * @return
+	 */
+	private PShape createTexturedSphere(float r, PImage t) {
+		int v1, v11, v2;
+		// Texture coordinates are given in pixels.
+		textureMode(IMAGE);
+		PShape sphere = createShape(GROUP);
 		float iu = (float) (t.width - 1) / (sDetail);
 		float iv = (float) (t.height - 1) / (sDetail);
 		float u = 0, v = iv;
+
+		// Add the southern cap
+		PShape strip = beginSphereStrip(t);
 		for (int i = 0; i < sDetail; i++) {
-			vertex(0, -r, 0, u, 0);
-			vertex(sphereX[i] * r, sphereY[i] * r, sphereZ[i] * r, u, v);
+			poleVertex(strip, -r, u, 0);
+			sphereVertex(strip, i, r, u, v);
 			u += iu;
 		}
-		vertex(0, -r, 0, u, 0);
-		vertex(sphereX[0] * r, sphereY[0] * r, sphereZ[0] * r, u, v);
-		endShape();
+		poleVertex(strip, -r, u, 0);
+		sphereVertex(strip, 0, r, u, v);
+		strip.endShape();
+		sphere.addChild(strip);
 
 		// Middle rings
 		int voff = 0;
@@ -402,42 +510,67 @@ public class Explore3D extends PApplet {
 			voff += sDetail;
 			v2 = voff;
 			u = 0;
-			beginShape(TRIANGLE_STRIP);
-			texture(t);
+			strip = beginSphereStrip(t);
 			for (int j = 0; j < sDetail; j++) {
-				vertex(sphereX[v1] * r, sphereY[v1] * r, sphereZ[v1++] * r, u, v);
-				vertex(sphereX[v2] * r, sphereY[v2] * r, sphereZ[v2++] * r, u, v + iv);
+				sphereVertex(strip, v1++, r, u, v);
+				sphereVertex(strip, v2++, r, u, v + iv);
 				u += iu;
 			}
 
 			// Close each ring
 			v1 = v11;
 			v2 = voff;
-			vertex(sphereX[v1] * r, sphereY[v1] * r, sphereZ[v1] * r, u, v);
-			vertex(sphereX[v2] * r, sphereY[v2] * r, sphereZ[v2] * r, u, v + iv);
-			endShape();
+			sphereVertex(strip, v1, r, u, v);
+			sphereVertex(strip, v2, r, u, v + iv);
+			strip.endShape();
+			sphere.addChild(strip);
 			v += iv;
 		}
 		u = 0;
 
 		// Add the northern cap
-		beginShape(TRIANGLE_STRIP);
-		texture(t);
+		strip = beginSphereStrip(t);
 		for (int i = 0; i < sDetail; i++) {
 			v2 = voff + i;
-			vertex(sphereX[v2] * r, sphereY[v2] * r, sphereZ[v2] * r, u, v);
-			vertex(0, r, 0, u, v + iv);
+			sphereVertex(strip, v2, r, u, v);
+			poleVertex(strip, r, u, v + iv);
 			u += iu;
 		}
-		vertex(sphereX[voff] * r, sphereY[voff] * r, sphereZ[voff] * r, u, v);
-		endShape();
+		sphereVertex(strip, voff, r, u, v);
+		strip.endShape();
+		sphere.addChild(strip);
+		return sphere;
+	}
+
+	private PShape beginSphereStrip(PImage t) {
+		PShape strip = createShape();
+		strip.beginShape(TRIANGLE_STRIP);
+		strip.noStroke();
+		strip.texture(t);
+		return strip;
+	}
+
+	/**
+	 * Add a vertex from the sphere's vertex list. On a sphere around the origin the normal is the unit vertex itself.
+	 */
+	private void sphereVertex(PShape strip, int i, float r, float u, float v) {
+		strip.normal(sphereX[i], sphereY[i], sphereZ[i]);
+		strip.vertex(sphereX[i] * r, sphereY[i] * r, sphereZ[i] * r, u, v);
+	}
+
+	private void poleVertex(PShape strip, float y, float u, float v) {
+		strip.normal(0, y < 0 ? -1 : 1, 0);
+		strip.vertex(0, y, 0, u, v);
 	}
 
 	/**
 	 * Put all cleanup stuff here.
 	 */
 	private void cleanup() {
-
+		if (frameSource != null)
+			frameSource.close();
+		LOGGER.info(String.format("Pointer prediction error: mean %.1f mm, max %.1f mm (%.1f mm without prediction) over %d predictions.",
+				predictor.getMeanError(), predictor.getMaxError(), predictor.getMeanRawError(), predictor.getErrorCount()));
 	}
 
 	public void stop() {
@@ -7,16 +7,14 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import processing.core.PApplet;
-import processing.core.PImage;
+import util.FrameSnapshot;
+import util.FrameSource;
+import util.GestureEngine;
+import util.ImageCache;
+import util.LeapMotionUtil;
+import util.MipImage;
 import util.ShapeUtil;
 
-import com.leapmotion.leap.Controller;
-import com.leapmotion.leap.Frame;
-import com.leapmotion.leap.Gesture;
-import com.leapmotion.leap.SwipeGesture;
-import com.leapmotion.leap.Gesture.State;
-import com.leapmotion.leap.Gesture.Type;
-
 /**
  * @author jameson.edwards
  */
@@ -32,15 +30,19 @@ public class SimpleSwipeGallery extends PApplet {
 	private final static float ZOOM_INCREMENT = 0.3f;
 	private final static float ZOOM_MAX = 5.0f;
 	private final static float ZOOM_MIN = 0.1f;
+	// Decoded images kept in memory, and how many images either side of the one shown are decoded ahead.
+	private final static long IMAGE_CACHE_BYTES = 256L * 1024 * 1024;
+	private final static int PREFETCH_DISTANCE = 2;
 
-	private static Controller lmController;
+	private static FrameSource frameSource;
+	private static GestureEngine gestureEngine = new GestureEngine();
 	private static float centerX;
 	private static float centerY;
 	private static String assetPath = System.getProperty("user.dir") + File.separator + "assets" + File.separator + "gallery" + File.separator;
 	private static float scale = 1.0f;
 
-	// Carousel of images, as an array.
-	private static PImage[] images;
+	// Carousel of images, decoded as they come near. Each carries smaller copies for drawing it zoomed out.
+	private static ImageCache images;
 	private static int curImageIndex = 0;
 	private static int swipeWaitCnt = SWIPE_WAIT_FRAMES;
 
@@ -68,26 +70,27 @@ public class SimpleSwipeGallery extends PApplet {
 
 		try {
 			// Disable window resizing.
-			ShapeUtil.findFrame(this).setResizable(false);
+			ShapeUtil.setResizable(this, false);
 
 			// Get images from a directory.
-			images = ShapeUtil.loadImages(this, assetPath);
+			images = new ImageCache(this, ShapeUtil.listImageFiles(assetPath), IMAGE_CACHE_BYTES);
 
 			// Set the default background image.
 			background(0);
-			if (images.length > 0) {
+			if (images.size() > 0) {
 				curImageIndex = 0;
-				LOGGER.info("Showing image " + String.valueOf(curImageIndex + 1) + " of " + String.valueOf(images.length));
+				images.get(curImageIndex);
+				images.prefetch(curImageIndex, PREFETCH_DISTANCE);
+				LOGGER.info("Showing image " + String.valueOf(curImageIndex + 1) + " of " + String.valueOf(images.size()));
 			}
 
-			// Instantiate the Leap Motion controller.
-			lmController = new Controller();
+			// Open the Leap Motion frame source.
+			frameSource = LeapMotionUtil.openFrameSource();
 
 			// Set gestures to track.
-			lmController.enableGesture(Gesture.Type.TYPE_SWIPE);
-			if (lmController.config().setFloat("Gesture.Swipe.MinLength", 150.0f)
-					&& lmController.config().setFloat("Gesture.Swipe.MinVelocity", 100f))
-				lmController.config().save();
+			gestureEngine.enableGesture(FrameSnapshot.GESTURE_SWIPE);
+			gestureEngine.setSwipeMinLength(150.0f);
+			gestureEngine.setSwipeMinVelocity(100f);
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -102,40 +105,54 @@ public class SimpleSwipeGallery extends PApplet {
 		// Show current image.
 		background(0);
 
-		if (images.length > 0) {
+		if (images.size() > 0) {
 			// If a swipe has just happened, wait before the next swipe can be detected.
-			if (swipeWaitCnt > 0) {
+			if (swipeWaitCnt > 0)
 				swipeWaitCnt--;
-			} else {
-				if (lmController.isConnected()) {
-					Frame frame = lmController.frame();
 
-					// TODO: The swipe gestures don't see to work very well...
-					
-					for (Gesture gesture : frame.gestures()) {
-						if (gesture.type() == Type.TYPE_SWIPE && gesture.state() == State.STATE_STOP) {
+			if (frameSource.isConnected()) {
+				// Swipes stop in a single device frame, so look at every frame since the last draw. Frames are drained even while waiting so
+				// old swipes are not acted on later.
+				FrameSnapshot frame;
+				while ((frame = frameSource.nextFrame()) != null) {
+					frame = gestureEngine.process(frame);
+					if (swipeWaitCnt > 0)
+						continue;
+
+					for (int i = 0; i < frame.getGestureCount(); i++) {
+						if (frame.getGestureType(i) == FrameSnapshot.GESTURE_SWIPE && frame.getGestureState(i) == FrameSnapshot.STATE_STOP) {
 							LOGGER.info("Swipe gesture detected.");
-							SwipeGesture swipe = new SwipeGesture(gesture);
-							if (swipe.direction().getX() > SWIPE_X_THESHOLD) {
+							if (frame.getGestureDirectionX(i) > SWIPE_X_THESHOLD) {
 								nextImage();
-								LOGGER.info("Showing image " + String.valueOf(curImageIndex + 1) + " of " + String.valueOf(images.length));
-							} else if (swipe.direction().getX() < -SWIPE_X_THESHOLD) {
+								LOGGER.info("Showing image " + String.valueOf(curImageIndex + 1) + " of " + String.valueOf(images.size()));
+							} else if (frame.getGestureDirectionX(i) < -SWIPE_X_THESHOLD) {
 								prevImage();
-								LOGGER.info("Showing image " + String.valueOf(curImageIndex + 1) + " of " + String.valueOf(images.length));
-							} else if (swipe.direction().getY() > SWIPE_Y_THESHOLD) {
+								LOGGER.info("Showing image " + String.valueOf(curImageIndex + 1) + " of " + String.valueOf(images.size()));
+							} else if (frame.getGestureDirectionY(i) > SWIPE_Y_THESHOLD) {
 								scaleUp();
-							} else if (swipe.direction().getY() < -SWIPE_Y_THESHOLD) {
+							} else if (frame.getGestureDirectionY(i) < -SWIPE_Y_THESHOLD) {
 								scaleDown();
 							}
 
 							// Reset swipe wait counter.
 							swipeWaitCnt = SWIPE_WAIT_FRAMES;
+							break;
 						}
 					}
 				}
+				// Replayed sources treat frame() as the end of the draw.
+				frameSource.frame();
 			}
 
-			ShapeUtil.centerImage(this, images[curImageIndex], scale);
+			// Never wait for a decode: show the image once it is ready.
+			MipImage image = images.get(curImageIndex);
+			if (image != null) {
+				ShapeUtil.centerImage(this, image, scale);
+			} else {
+				fill(255);
+				textAlign(CENTER, CENTER);
+				text(images.isFailed(curImageIndex) ? "Could not load " + images.getFile(curImageIndex).getName() : "Loading...", centerX, centerY);
+			}
 		}
 	}
 
@@ -156,22 +173,42 @@ public class SimpleSwipeGallery extends PApplet {
 	}
 
 	private void nextImage() {
-		if (images.length > 0) {
-			if (curImageIndex >= images.length - 1)
+		if (images.size() > 0) {
+			if (curImageIndex >= images.size() - 1)
 				curImageIndex = 0;
 			else
 				curImageIndex++;
+			images.prefetch(curImageIndex, PREFETCH_DISTANCE);
 		}
 
 		scale(0.1f);
 	}
 
 	private void prevImage() {
-		if (images.length > 0) {
+		if (images.size() > 0) {
 			if (curImageIndex <= 0)
-				curImageIndex = images.length - 1;
+				curImageIndex = images.size() - 1;
 			else
 				curImageIndex--;
+			images.prefetch(curImageIndex, PREFETCH_DISTANCE);
 		}
 	}
+
+	private void cleanup() {
+		if (images != null)
+			images.shutdown();
+		MipImage.shutdown();
+		if (frameSource != null)
+			frameSource.close();
+	}
+
+	public void stop() {
+		cleanup();
+		super.stop();
+	}
+
+	public void exit() {
+		cleanup();
+		super.exit();
+	}
 }
@@ -6,16 +6,16 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import processing.core.PApplet;
+import util.AudioSnapshot;
+import util.FrameSnapshot;
+import util.FrameGovernor;
+import util.FrameSource;
+import util.Hud;
 import util.ShapeUtil;
 import util.MinimUtil;
+import util.OneEuroFilter;
 import util.LeapMotionUtil;
 
-import com.leapmotion.leap.Controller;
-import com.leapmotion.leap.Frame;
-import com.leapmotion.leap.Hand;
-import com.leapmotion.leap.Pointable;
-import com.leapmotion.leap.Vector;
-
 import ddf.minim.*;
 import ddf.minim.signals.*;
 
@@ -34,9 +34,28 @@ public class SimpleTheremin extends PApplet {
 	private final static float AMPLITUDE_MIN = -40f;
 	private final static float AMPLITUDE_MAX = 6f;
 	// The portamento speed on the oscillator, in milliseconds.
-	private final static int SINE_PORTAMENTO = 50; 
+	// The pointers are filtered, so only a short glide is needed to hide the steps between frames.
+	private final static int SINE_PORTAMENTO = 15;
+
+	// Hold this frame rate on slower machines by drawing the waveform in columns 2, 4 or 8 pixels wide.
+	private final static float TARGET_FPS = 30;
+	private final static int[] WAVEFORM_STEPS = { 8, 4, 2, 1 };
+	// Indexed by which waves are used: sine 1, triangle 2, square 4.
+	private final static String[] WAVES_TEXTS = { "", " sine", " triangle", " sine triangle", " square", " sine square", " triangle square",
+			" sine triangle square" };
 
-	private static Controller lmController;
+	private static FrameSource frameSource;
+	private static FrameGovernor governor = new FrameGovernor(TARGET_FPS);
+	private static int waveformStep = 1;
+	private static Hud hud;
+	private static int wavesField;
+	private static int freqField;
+	private static int gainField;
+	// Remove jitter from the pointers, so the pitch holds still.
+	private static OneEuroFilter filter = new OneEuroFilter();
+	private static FrameSnapshot filtered = new FrameSnapshot();
+	// Window coordinates (x, y, z) of every pointable in the current frame.
+	private static float[] positions = new float[FrameSnapshot.MAX_POINTABLES * 3];
 	private static float centerX;
 	private static float centerY;
 	private static int waveformMultiplier = 100;
@@ -46,6 +65,7 @@ public class SimpleTheremin extends PApplet {
 	private static float radiusMin = 5f;
 	private static Minim minim;
 	private static AudioOutput audioOutput;
+	private static AudioSnapshot audioSnapshot;
 	private static SineWave sineWave;
 	private static TriangleWave triangleWave;
 	private static SquareWave squareWave;
@@ -67,6 +87,11 @@ public class SimpleTheremin extends PApplet {
 		size(WINDOW_WIDTH, WINDOW_HEIGHT/* , P2D */);
 		centerX = width / 2;
 		centerY = height / 2;
+		// Indicate which waves are being used. On OpenGL renderers the bounds size the layer the text is drawn to.
+		hud = new Hud(this, 45, 35, 255, 60);
+		wavesField = hud.addField("Waves used: ", 50, 50);
+		freqField = hud.addField("Freq: ", " hz", 0, 50, 70, LEFT);
+		gainField = hud.addField("Gain: ", " db", 0, 50, 90, LEFT);
 
 		// Setup logging.
 		LOGGER.setLevel(java.util.logging.Level.SEVERE);
@@ -74,12 +99,14 @@ public class SimpleTheremin extends PApplet {
 
 		try {
 			// Disable window resizing.
-			ShapeUtil.findFrame(this).setResizable(false);
+			ShapeUtil.setResizable(this, false);
 
 			minim = new Minim(this);
 
 			// Get a line out from Minim.
 			audioOutput = minim.getLineOut(Minim.MONO, FILE_BUFFER_SIZE);
+			audioSnapshot = new AudioSnapshot(audioOutput.bufferSize());
+			audioOutput.addListener(audioSnapshot);
 			/*
 			 * Source: https://forum.processing.org/topic/i-want-to-hear-continues-sound-as-long-as-i-paint#25080000001421145
 			 */
@@ -100,8 +127,22 @@ public class SimpleTheremin extends PApplet {
 			waveformYOffest = centerY - waveformMultiplier;
 			leftRightSpread = waveformMultiplier * 2;
 
-			// Instantiate the Leap Motion controller.
-			lmController = new Controller();
+			// Open the Leap Motion frame source.
+			frameSource = LeapMotionUtil.openFrameSource();
+
+			// Let the governor draw the waveform with fewer lines to hold the frame rate.
+			governor.addKnob(new FrameGovernor.Knob() {
+				@Override
+				public int getLevelCount() {
+					return WAVEFORM_STEPS.length;
+				}
+
+				@Override
+				public void setLevel(int level) {
+					waveformStep = WAVEFORM_STEPS[level];
+				}
+			});
+			governor.register(this);
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -116,72 +157,84 @@ public class SimpleTheremin extends PApplet {
 		centerX = width / 2;
 		centerY = height / 2;
 		background(0);
-		MinimUtil.drawWaveform(this, minim, audioOutput, waveformMultiplier, waveformXOffest, waveformYOffest, leftRightSpread, new int[] { 255, 255,
-				255 });
+		audioSnapshot.update();
+		MinimUtil.drawWaveform(this, audioSnapshot, waveformMultiplier, waveformXOffest, waveformYOffest, leftRightSpread, new int[] { 255, 255,
+				255 }, waveformStep);
 		
 		// Draw a line dividing the window.
 		line(centerX, 0, centerX, height);
 		
-		// Indicate which waves are being used.
-		String wavesText = "Waves used: ";
-		String freqText = "Freq: ";
-		String gainText = "Gain: ";
+		int waves = 0;
+		boolean playing = false;
 
-		if (lmController.isConnected()) {
-			Frame frame = lmController.frame();
+		if (frameSource.isConnected()) {
+			FrameSnapshot newFrame;
+			while ((newFrame = frameSource.nextFrame()) != null)
+				filter.filter(newFrame, filtered);
+			filter.filter(frameSource.frame(), filtered);
+			FrameSnapshot frame = filtered;
 
-			if (frame.hands().count() == 2) {
-				Hand lHand = frame.hands().leftmost();
-				Pointable lPointer = lHand.pointables().rightmost();
-				Hand rHand = frame.hands().rightmost();
-				Pointable rPointer = rHand.pointables().leftmost();
+			if (frame.getHandCount() == 2) {
+				int lHand = frame.leftmostHand();
+				int lPointer = frame.rightmost(lHand);
+				int rHand = frame.rightmostHand();
+				int rPointer = frame.leftmost(rHand);
 
-				if (lPointer.isValid() && rPointer.isValid()) {
+				if (lPointer >= 0 && rPointer >= 0) {
 					// Transform coordinates from Leap to Processing.
-					Vector lPosition = LeapMotionUtil.leapToProcessingVector(this, lmController, lPointer.tipPosition(), LeapMotionUtil.LEFT_HAND);
-					Vector rPosition = LeapMotionUtil.leapToProcessingVector(this, lmController, rPointer.tipPosition(), LeapMotionUtil.RIGHT_HAND);
-					LOGGER.fine("LEFT x: " + lPosition.getX() + ", RIGHT x: " + rPosition.getX());
+					LeapMotionUtil.leapToProcessingCoordinates(this, frame, LeapMotionUtil.BOTH_HANDS, positions);
+					float lPositionX = positions[lPointer * 3];
+					float lPositionY = positions[lPointer * 3 + 1];
+					float rPositionX = positions[rPointer * 3];
+					float rPositionY = positions[rPointer * 3 + 1];
+					LOGGER.fine("LEFT x: " + lPositionX + ", RIGHT x: " + rPositionX);
 					
 					// Set the frequency based on the right pointer position.
-					float freq = map(rPosition.getX(), centerX, width, FREQUENCY_MIN, FREQUENCY_MAX);
-					freqText += String.format("%.0f", freq) + " hz";
+					float freq = map(rPositionX, centerX, width, FREQUENCY_MIN, FREQUENCY_MAX);
+					hud.setValue(freqField, freq);
 					if (enableSineWave) {
 						sineWave.setFreq(freq);
-						wavesText += " sine";
+						waves |= 1;
 					} else {
 						sineWave.setFreq(0);
 					}
 					if (enableTriangleWave) {
 						triangleWave.setFreq(freq);
-						wavesText += " triangle";
+						waves |= 2;
 					} else {
 						triangleWave.setFreq(0);
 					}
 					if (enableSquareWave) {
 						squareWave.setFreq(freq);
-						wavesText += " square";
+						waves |= 4;
 					} else {
 						squareWave.setFreq(0);
 					}
 
 					// Set the gain based on the left pointer position.
-					float gain = map(lPosition.getY(), height, 0, AMPLITUDE_MIN, AMPLITUDE_MAX);
+					float gain = map(lPositionY, height, 0, AMPLITUDE_MIN, AMPLITUDE_MAX);
 					audioOutput.setGain(gain);
-					gainText += String.format("%.0f", gain) + " db";
+					hud.setValue(gainField, gain);
+					playing = true;
 				    audioOutput.unmute();
 					
 					// Draw guide markers.
-					ShapeUtil.drawCircle(this, lPosition.getX(), lPosition.getY(), radiusMin, new int[] { 255, 0, 0 });
-					ShapeUtil.drawCircle(this, rPosition.getX(), rPosition.getY(), radiusMin, new int[] { 0, 255, 0 });
+					ShapeUtil.drawCircle(this, lPositionX, lPositionY, radiusMin, new int[] { 255, 0, 0 });
+					ShapeUtil.drawCircle(this, rPositionX, rPositionY, radiusMin, new int[] { 0, 255, 0 });
 				}
 			} else {
 				audioOutput.mute();
 			}
 			
-			text(wavesText, 50, 50);
-			text(freqText, 50, 70);
-			text(gainText, 50, 90);
-			LOGGER.fine("Num hands detected: " + frame.hands().count());
+			if (playing) {
+				hud.setText(wavesField, WAVES_TEXTS[waves]);
+			} else {
+				hud.clear(wavesField);
+				hud.clear(freqField);
+				hud.clear(gainField);
+			}
+			hud.draw();
+			LOGGER.fine("Num hands detected: " + frame.getHandCount());
 		}
 	}
 
@@ -203,6 +256,8 @@ public class SimpleTheremin extends PApplet {
 		// Put all cleanup stuff here!
 		// Close and stop stuff.
 		minim.stop();
+		if (frameSource != null)
+			frameSource.close();
 	}
 
 	public void stop() {
@@ -7,18 +7,16 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import processing.core.PApplet;
+import util.AudioSnapshot;
+import util.FrameSnapshot;
+import util.FrameSource;
+import util.MinimUtil;
+import util.GestureBus;
+import util.GestureEngine;
+import util.Hud;
+import util.LeapMotionUtil;
 import util.ShapeUtil;
 
-import com.leapmotion.leap.CircleGesture;
-import com.leapmotion.leap.Controller;
-import com.leapmotion.leap.Frame;
-import com.leapmotion.leap.Gesture;
-import com.leapmotion.leap.Pointable;
-import com.leapmotion.leap.Gesture.State;
-import com.leapmotion.leap.ScreenTapGesture;
-import com.leapmotion.leap.SwipeGesture;
-import com.leapmotion.leap.Vector;
-
 import ddf.minim.*;
 import ddf.minim.effects.*;
 import ddf.minim.spi.*; // for AudioRecordingStream
@@ -30,8 +28,16 @@ public class TempoMusicPlayer extends PApplet {
 	private final static int WINDOW_WIDTH = 1000;
 	private final static int WINDOW_HEIGHT = 667;
 	private final static int FILE_BUFFER_SIZE = 512;
+	private final static int[] WAVEFORM_RGB = new int[] { 255, 255, 255 };
 	
-	private static Controller lmController;
+	private static FrameSource frameSource;
+	private static GestureEngine gestureEngine = new GestureEngine();
+	private static GestureBus gestureBus = new GestureBus();
+	// The frame being drawn, for the gesture handlers.
+	private static FrameSnapshot currentFrame;
+	private static Hud hud;
+	private static int titleField;
+	private static int tempoField;
 	private static float centerX;
 	private static float centerY;
 	private static int waveformMultiplier = 100;
@@ -45,6 +51,7 @@ public class TempoMusicPlayer extends PApplet {
 	private static float radiusMax = 50f;
 	private static Minim minim;
 	private static AudioOutput audioOutput;
+	private static AudioSnapshot audioSnapshot;
 	private static FilePlayer filePlayer;
 	private static AudioMetaData meta;
 	private static TickRate tickRate;
@@ -76,7 +83,7 @@ public class TempoMusicPlayer extends PApplet {
 
 		try {
 			// Disable window resizing.
-			findFrame().setResizable(false);
+			ShapeUtil.setResizable(this, false);
 
 			minim = new Minim(this);
 			// TODO: Load an audio file (make this interactive?).
@@ -95,31 +102,39 @@ public class TempoMusicPlayer extends PApplet {
 			// Get a line out from Minim. It's important that the file is the same audio format as our output (i.e. same sample rate, number of
 			// channels, etc).
 			audioOutput = minim.getLineOut();
+			audioSnapshot = new AudioSnapshot(audioOutput.bufferSize());
+			audioOutput.addListener(audioSnapshot);
 
 			// Patch the file player through the effects to the output.
 			filePlayer.patch(tickRate).patch(audioOutput);
 
 			// Get the metadata.
 			meta = filePlayer.getMetaData();
+			// The title is set once; the tempo text is only built again when the tempo changes.
+			float titleY = centerY - waveformMultiplier / 2;
+			hud = new Hud(this, (int) centerX - 300, (int) titleY - 20, 600, 40);
+			titleField = hud.addField("Title: ", "", 0, centerX, titleY, CENTER);
+			hud.setText(titleField, meta.title());
+			tempoField = hud.addField("Tempo: ", "", 2, centerX, titleY + 15, CENTER);
 
 			// Set positionion elements.
 			waveformXOffest = centerX - audioOutput.bufferSize() / 2;
 			waveformYOffest = centerY - waveformMultiplier / 2;
 			leftRightSpread = waveformMultiplier * 2;
 			
-			// Instantiate the Leap Motion controller.
-			lmController = new Controller();
+			// Open the Leap Motion frame source.
+			frameSource = LeapMotionUtil.openFrameSource();
 
 			// Set gestures to track.
-			//lmController.enableGesture(Gesture.Type.TYPE_SCREEN_TAP);
-			lmController.enableGesture(Gesture.Type.TYPE_CIRCLE);
-			lmController.enableGesture(Gesture.Type.TYPE_SWIPE);
+			//gestureEngine.enableGesture(FrameSnapshot.GESTURE_SCREEN_TAP);
+			gestureEngine.enableGesture(FrameSnapshot.GESTURE_CIRCLE);
+			gestureEngine.enableGesture(FrameSnapshot.GESTURE_SWIPE);
 			
-			// Set screen tap config.
-			if (lmController.config().setFloat("Gesture.ScreenTap.MinForwardVelocity", 50.0f)
-					&& lmController.config().setFloat("Gesture.ScreenTap.HistorySeconds", .1f)
-					&& lmController.config().setFloat("Gesture.ScreenTap.MinDistance", 3.0f))
-				lmController.config().save();
+			// Set screen tap thresholds.
+			gestureEngine.setTapMinVelocity(50.0f);
+			gestureEngine.setTapHistorySeconds(.1f);
+			gestureEngine.setTapMinDistance(3.0f);
+			addGestureHandlers();
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -130,47 +145,33 @@ public class TempoMusicPlayer extends PApplet {
 		}
 	}
 
-	private void drawWaveform() {
-		/*
-		 * We draw the waveform by connecting neighbor values with a line/ We multiply each of the values by 50 because the values in the buffers are
-		 * normalized. This means that they have values between -1 and 1. If we don't scale them up our waveform will look more or less like a
-		 * straight line.
-		 * 
-		 * Source: http://code.compartmental.net/tools/minim/quickstart/
-		 */
-		stroke(255);
-		for (int i = 0; i < audioOutput.bufferSize() - 1; i++) {
-			line(waveformXOffest + i, waveformMultiplier + audioOutput.left.get(i) * waveformMultiplier + waveformYOffest, i + 1 + waveformXOffest,
-					waveformMultiplier + audioOutput.left.get(i + 1) * waveformMultiplier + waveformYOffest);
-			line(waveformXOffest + i, leftRightSpread + audioOutput.right.get(i) * waveformMultiplier + waveformYOffest, i + 1 + waveformXOffest,
-					leftRightSpread + audioOutput.right.get(i + 1) * waveformMultiplier + waveformYOffest);
-		}
-	}
-	
 	public void draw() {
 		background(0);
-		drawWaveform();
-		String titleText = "Title: " + meta.title();
-		float titleXOffset = 0;
-		float titleYOffset = -waveformMultiplier / 2;
-		text(titleText, centerX - textWidth(titleText) / 2 + titleXOffset, centerY + titleYOffset);
+		audioSnapshot.update();
+		MinimUtil.drawWaveform(this, audioSnapshot, waveformMultiplier, waveformXOffest, waveformYOffest, leftRightSpread, WAVEFORM_RGB, 1);
+
+		if (frameSource.isConnected()) {
+			// Taps only show up in a single device frame, so post every frame since the last draw.
+			FrameSnapshot newFrame;
+			while ((newFrame = frameSource.nextFrame()) != null)
+				gestureBus.post(gestureEngine.process(newFrame));
 
-		if (lmController.isConnected()) {
-			Frame frame = lmController.frame();
-			LOGGER.fine("FPS: " + frame.currentFramesPerSecond());
+			FrameSnapshot frame = gestureEngine.process(frameSource.frame());
+			gestureBus.post(frame);
+			LOGGER.fine("FPS: " + frame.getFramesPerSecond());
 
-			Pointable foremost = frame.pointables().frontmost();
-			if (foremost.isValid()) {
-				Vector direction = foremost.direction();
-				Vector projectedDirection = direction.times(projectionMultiplier);
+			int foremost = frame.frontmost();
+			if (foremost >= 0) {
+				float projectedX = frame.getDirectionX(foremost) * projectionMultiplier;
+				float projectedY = frame.getDirectionY(foremost) * projectionMultiplier;
 
 				// Center x axis around center of window.
-				float x = centerX + projectedDirection.getX() * xyMultiplier;
+				float x = centerX + projectedX * xyMultiplier;
 				// Center y axis around center of window. Negative since
 				// coordinate system is different.
-				float y = centerY - projectedDirection.getY() * xyMultiplier;
+				float y = centerY - projectedY * xyMultiplier;
 				// Radius is based on how close the pointer is, with closer values being more negative. Note the lower cap on radius.
-				float z = foremost.tipPosition().getZ();
+				float z = frame.getTipZ(foremost);
 				//float radius = z < radiusMin ? radiusMin : -z * radiusMultiplier;
 				float radius;
 				if (z < radiusMin)
@@ -190,65 +191,57 @@ public class TempoMusicPlayer extends PApplet {
 			
 			//normalizeGain();
 			
-			for (Gesture gesture : frame.gestures()) {
-				switch (gesture.type()) {
-				case TYPE_CIRCLE:
-					LOGGER.info("Circle gesture detected.");
-					CircleGesture circle = new CircleGesture(gesture);
-					// Calculate clock direction using the angle between circle normal and pointable.
-					String clockwiseness;
-					if (circle.pointable().direction().angleTo(circle.normal()) <= Math.PI / 4) {
-						// Clockwise if angle is less than 90 degrees.
-						clockwiseness = "clockwise";
-						raiseVolume();
-					} else {
-						clockwiseness = "counterclockwise";
-						lowerVolume();
-					}
+			// Act on the gestures posted since the last draw.
+			currentFrame = frame;
+			gestureBus.dispatch();
+		}
 
-					// Calculate angle swept since last frame
-					double sweptAngle = 0;
-					if (circle.state() != State.STATE_START) {
-						CircleGesture previousUpdate = new CircleGesture(lmController.frame(1).gesture(circle.id()));
-						sweptAngle = (circle.progress() - previousUpdate.progress()) * 2 * Math.PI;
-					}
+		// Display title and tempo.
+		hud.setValue(tempoField, audioOutput.getTempo() * tickRateRate);
+		hud.draw();
+	}
 
-					//LOGGER.info("Circle id: " + circle.id() + ", " + circle.state() + ", progress: " + circle.progress() + ", radius: "
-					//		+ circle.radius() + ", angle: " + Math.toDegrees(sweptAngle) + ", " + clockwiseness);
-					break;
-				case TYPE_SWIPE:
-					LOGGER.info("Swipe gesture detected.");
-					SwipeGesture swipe = new SwipeGesture(gesture);
-					pan(swipe.position());
-					//System.out.println("Swipe id: " + swipe.id() + ", " + swipe.state() + ", position: " + swipe.position() + ", direction: "
-					//		+ swipe.direction() + ", speed: " + swipe.speed());
-					break;
-				case TYPE_SCREEN_TAP:
-					LOGGER.info("Screen tap gesture detected.");
-					ScreenTapGesture screenTap = new ScreenTapGesture(gesture);
-					//System.out.println("Screen Tap id: " + screenTap.id() + ", " + screenTap.state() + ", position: " + screenTap.position()
-					//		+ ", direction: " + screenTap.direction());
-					togglePlay();
-					break;
-				case TYPE_KEY_TAP:
-					LOGGER.info("Key tap gesture detected.");
-					/*
-					 * KeyTapGesture keyTap = new KeyTapGesture(gesture); System.out.println("Key Tap id: " + keyTap.id() + ", " + keyTap.state() +
-					 * ", position: " + keyTap.position() + ", direction: " + keyTap.direction());
-					 */
-					break;
-				default:
-					LOGGER.info("Unknown gesture detected.");
-					break;
-				}
+	/**
+	 * Register what each gesture does. Circles change the volume, swipes pan and screen taps toggle play.
+	 */
+	private void addGestureHandlers() {
+		gestureBus.addHandler(FrameSnapshot.GESTURE_CIRCLE, new GestureBus.Adapter() {
+			@Override
+			public void start(GestureBus.Event event) {
+				LOGGER.info("Circle gesture detected.");
 			}
-		}
-		
-		// Display tempo.
-		String tempoText = "Tempo: " + (audioOutput.getTempo() * tickRateRate);
-		float tempoXOffset = titleXOffset;
-		float tempoYOffset = titleYOffset + 15;
-		text(tempoText, centerX - textWidth(tempoText) / 2 + tempoXOffset, centerY + tempoYOffset);
+
+			@Override
+			public void update(GestureBus.Event event) {
+				// Clock direction is calculated using the angle between circle normal and pointable.
+				if (event.isClockwise())
+					raiseVolume();
+				else
+					lowerVolume();
+				//LOGGER.info("Circle id: " + event.getId() + ", progress: " + event.getProgress() + ", angle: " + Math.toDegrees(event.getSweptAngle()));
+			}
+		});
+		gestureBus.addHandler(FrameSnapshot.GESTURE_SWIPE, new GestureBus.Adapter() {
+			@Override
+			public void stop(GestureBus.Event event) {
+				LOGGER.info("Swipe gesture detected.");
+				pan(currentFrame, event.getX(), event.getY(), event.getZ());
+				//System.out.println("Swipe id: " + event.getId() + ", direction x: " + event.getDirectionX());
+			}
+		});
+		gestureBus.addHandler(FrameSnapshot.GESTURE_SCREEN_TAP, new GestureBus.Adapter() {
+			@Override
+			public void stop(GestureBus.Event event) {
+				LOGGER.info("Screen tap gesture detected.");
+				togglePlay();
+			}
+		});
+		gestureBus.addHandler(FrameSnapshot.GESTURE_KEY_TAP, new GestureBus.Adapter() {
+			@Override
+			public void stop(GestureBus.Event event) {
+				LOGGER.info("Key tap gesture detected.");
+			}
+		});
 	}
 
 	// TODO: Get this to work.
@@ -303,8 +296,8 @@ public class TempoMusicPlayer extends PApplet {
 		audioOutput.setGain(audioOutput.getGain() - 0.3f);
 	}
 
-	private void pan(Vector pt) {
-		float xMapped = map(lmController.frame().interactionBox().normalizePoint(pt).getX(), 0, 1, -1, 1);
+	private void pan(FrameSnapshot frame, float x, float y, float z) {
+		float xMapped = map(LeapMotionUtil.normalizePoint(frame, x, y, z).x, 0, 1, -1, 1);
 		LOGGER.info("Pan() called with current PAN = " + audioOutput.getPan() + " and new PAN = " + xMapped);
 		audioOutput.setPan(xMapped);
 	}
@@ -322,6 +315,8 @@ public class TempoMusicPlayer extends PApplet {
 		// Close and stop stuff.
 		filePlayer.close();
 		minim.stop();
+		if (frameSource != null)
+			frameSource.close();
 	}
 
 	public void stop() {
@@ -333,16 +328,4 @@ public class TempoMusicPlayer extends PApplet {
 		cleanup();
 		super.exit();
 	}
-
-	/**
-	 * Get the current frame. (A hack for Eclipse from https://forum.processing.org/topic/trying-to-use-processing-in-eclipse).
-	 * 
-	 * @return
-	 */
-	private java.awt.Frame findFrame() {
-		java.awt.Container f = this.getParent();
-		while (!(f instanceof java.awt.Frame) && f != null)
-			f = f.getParent();
-		return (java.awt.Frame) f;
-	}
 }
@@ -8,18 +8,13 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import processing.core.*;
 import processing.video.*;
+import util.FrameSnapshot;
+import util.FrameSource;
+import util.GestureBus;
+import util.GestureEngine;
+import util.LeapMotionUtil;
 import util.ShapeUtil;
 
-import com.leapmotion.leap.CircleGesture;
-import com.leapmotion.leap.Controller;
-import com.leapmotion.leap.Frame;
-import com.leapmotion.leap.Gesture;
-import com.leapmotion.leap.Pointable;
-import com.leapmotion.leap.Gesture.State;
-import com.leapmotion.leap.ScreenTapGesture;
-import com.leapmotion.leap.SwipeGesture;
-import com.leapmotion.leap.Vector;
-
 /**
  * Source: http://www.learningprocessing.com/examples/chapter-16/example-16-5/
  * 
@@ -31,7 +26,11 @@ public class VideoScrubber extends PApplet {
 	private final static int WINDOW_WIDTH = 1280;
 	private final static int WINDOW_HEIGHT = 720;
 
-	private static Controller lmController;
+	private static FrameSource frameSource;
+	private static GestureEngine gestureEngine = new GestureEngine();
+	private static GestureBus gestureBus = new GestureBus();
+	// The frame being drawn, for the gesture handlers.
+	private static FrameSnapshot currentFrame;
 	private static float centerX;
 	private static float centerY;
 	private static float projectionMultiplier = 1f;
@@ -67,7 +66,7 @@ public class VideoScrubber extends PApplet {
 
 		try {
 			// Disable window resizing.
-			findFrame().setResizable(false);
+			ShapeUtil.setResizable(this, false);
 
 			// TODO: Load a video file (make this interactive?).
 			if (!new File(videoFilePath).exists())
@@ -78,19 +77,19 @@ public class VideoScrubber extends PApplet {
 			// Set initial movie volume to 50%, and keep track of volume in separate param.
 			movie.volume(movieVolume);
 
-			// Instantiate the Leap Motion controller.
-			lmController = new Controller();
+			// Open the Leap Motion frame source.
+			frameSource = LeapMotionUtil.openFrameSource();
 
 			// Set gestures to track.
-			// lmController.enableGesture(Gesture.Type.TYPE_SCREEN_TAP);
-			lmController.enableGesture(Gesture.Type.TYPE_CIRCLE);
-			// lmController.enableGesture(Gesture.Type.TYPE_SWIPE);
-
-			// Set screen tap config.
-			if (lmController.config().setFloat("Gesture.ScreenTap.MinForwardVelocity", 50.0f)
-					&& lmController.config().setFloat("Gesture.ScreenTap.HistorySeconds", .1f)
-					&& lmController.config().setFloat("Gesture.ScreenTap.MinDistance", 3.0f))
-				lmController.config().save();
+			// gestureEngine.enableGesture(FrameSnapshot.GESTURE_SCREEN_TAP);
+			gestureEngine.enableGesture(FrameSnapshot.GESTURE_CIRCLE);
+			// gestureEngine.enableGesture(FrameSnapshot.GESTURE_SWIPE);
+
+			// Set screen tap thresholds.
+			gestureEngine.setTapMinVelocity(50.0f);
+			gestureEngine.setTapHistorySeconds(.1f);
+			gestureEngine.setTapMinDistance(3.0f);
+			addGestureHandlers();
 		} catch (Exception ex) {
 			String msg = "Exception details: \nType: " + ex.getClass().toString() + "\nMessage: " + ex.getMessage() + "\nStack trace: "
 					+ ExceptionUtils.getStackTrace(ex) + "\n\n" + "Object state: "
@@ -103,22 +102,27 @@ public class VideoScrubber extends PApplet {
 
 	public void draw() {
 		background(0);
-		if (lmController.isConnected()) {
-			Frame frame = lmController.frame();
-			LOGGER.fine("FPS: " + frame.currentFramesPerSecond());
+		if (frameSource.isConnected()) {
+			// Taps only show up in a single device frame, so post every frame since the last draw.
+			FrameSnapshot newFrame;
+			while ((newFrame = frameSource.nextFrame()) != null)
+				gestureBus.post(gestureEngine.process(newFrame));
+
+			FrameSnapshot frame = gestureEngine.process(frameSource.frame());
+			gestureBus.post(frame);
+			LOGGER.fine("FPS: " + frame.getFramesPerSecond());
 
-			Pointable foremost = frame.pointables().frontmost();
+			int foremost = frame.frontmost();
 			// Use one hand to scrub video.
-			if (foremost.isValid() && frame.hands().count() == 1) {
+			if (foremost >= 0 && frame.getHandCount() == 1) {
 
-				Vector direction = foremost.direction();
-				Vector projectedDirection = direction.times(projectionMultiplier);
+				float projectedX = frame.getDirectionX(foremost) * projectionMultiplier;
 
 				// Center x axis around center of window.
-				float x = centerX + projectedDirection.getX() * xyMultiplier;
+				float x = centerX + projectedX * xyMultiplier;
 				// Center y axis around center of window. Negative since
 				// coordinate system is different.
-				// float y = centerY - projectedDirection.getY() * xyMultiplier;
+				// float y = centerY - projectedY * xyMultiplier;
 
 				if (moviePlaying) {
 					// Draw the video frames.
@@ -153,40 +157,42 @@ public class VideoScrubber extends PApplet {
 				image(movie, 0, 0);
 			}
 
-			for (Gesture gesture : frame.gestures()) {
-				switch (gesture.type()) {
-				case TYPE_CIRCLE:
-					LOGGER.info("Circle gesture detected.");
-					// Use two hands to change the volume.
-					if (frame.hands().count() > 1) {
-						CircleGesture circle = new CircleGesture(gesture);
-						// Calculate clock direction using the angle between circle normal and pointable.
-						if (circle.pointable().direction().angleTo(circle.normal()) <= Math.PI / 4) {
-							// Clockwise if angle is less than 90 degrees.
-							raiseVolume();
-						} else {
-							lowerVolume();
-						}
-					}
-					break;
-				case TYPE_SWIPE:
-					LOGGER.info("Swipe gesture detected.");
-					SwipeGesture swipe = new SwipeGesture(gesture);
-					break;
-				case TYPE_SCREEN_TAP:
-					LOGGER.info("Screen tap gesture detected.");
-					ScreenTapGesture screenTap = new ScreenTapGesture(gesture);
-					togglePlay();
-					break;
-				case TYPE_KEY_TAP:
-					LOGGER.info("Key tap gesture detected.");
-					break;
-				default:
-					LOGGER.info("Unknown gesture detected.");
-					break;
+			// Act on the gestures posted since the last draw.
+			currentFrame = frame;
+			gestureBus.dispatch();
+		}
+	}
+
+	/**
+	 * Register what each gesture does. Circles with two hands in view change the volume and screen taps toggle play.
+	 */
+	private void addGestureHandlers() {
+		gestureBus.addHandler(FrameSnapshot.GESTURE_CIRCLE, new GestureBus.Adapter() {
+			@Override
+			public void update(GestureBus.Event event) {
+				// Use two hands to change the volume.
+				if (currentFrame.getHandCount() > 1) {
+					// Clock direction is calculated using the angle between circle normal and pointable.
+					if (event.isClockwise())
+						raiseVolume();
+					else
+						lowerVolume();
 				}
 			}
-		}
+		});
+		gestureBus.addHandler(FrameSnapshot.GESTURE_SCREEN_TAP, new GestureBus.Adapter() {
+			@Override
+			public void stop(GestureBus.Event event) {
+				LOGGER.info("Screen tap gesture detected.");
+				togglePlay();
+			}
+		});
+		gestureBus.addHandler(FrameSnapshot.GESTURE_KEY_TAP, new GestureBus.Adapter() {
+			@Override
+			public void stop(GestureBus.Event event) {
+				LOGGER.info("Key tap gesture detected.");
+			}
+		});
 	}
 
 	/*
@@ -214,15 +220,18 @@ public class VideoScrubber extends PApplet {
 
 	private void printVolumeText(float volume) {
 		String msg = "";
+		// Only the two limit messages repeat, so only they are drawn from images; the percentage changes every step.
+		boolean prerendered = true;
 		if (volume == 0) {
 			msg = "Minimum volume";
 		} else if (volume == 1) {
 			msg = "Maximum volume";
 		} else {
 			msg = "Setting volume to " + floor(volume * 100) + "%";
+			prerendered = false;
 		}
 		ShapeUtil.drawRectangleWithText(this, centerX - textWidth(msg) / 2, centerY, 10, 10, 10, 40, 0, new int[] { 200, 200, 200 }, new int[] { 0,
-				0, 0 }, 20, new String[] { msg });
+				0, 0 }, 20, new String[] { msg }, false, false, prerendered);
 	}
 
 	private void raiseVolume() {
@@ -250,6 +259,8 @@ public class VideoScrubber extends PApplet {
 
 	private void cleanup() {
 		// TODO: Put all cleanup stuff here!
+		if (frameSource != null)
+			frameSource.close();
 	}
 
 	public void stop() {
@@ -261,16 +272,4 @@ public class VideoScrubber extends PApplet {
 		cleanup();
 		super.exit();
 	}
-
-	/**
-	 * Get the current frame. (A hack for Eclipse from https://forum.processing.org/topic/trying-to-use-processing-in-eclipse).
-	 * 
-	 * @return
-	 */
-	private java.awt.Frame findFrame() {
-		java.awt.Container f = this.getParent();
-		while (!(f instanceof java.awt.Frame) && f != null)
-			f = f.getParent();
-		return (java.awt.Frame) f;
-	}
 }
@@ -0,0 +1,109 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import ddf.minim.AudioListener;
+
+/**
+ * Copies each buffer Minim's audio thread completes, so the animation thread can draw or analyze a whole buffer without it changing
+ * underneath. Add it with audioSource.addListener(), call update() once per draw() and read getLeft() and getRight() as plain arrays.
+ *
+ * There are three buffers: the audio thread writes into one, the newest complete one waits in an AtomicReference and draw() reads the
+ * third. Each side swaps its buffer with the waiting one in a single getAndSet(), so the audio thread never waits for draw() and neither
+ * side ever sees the other writing.
+ */
+public class AudioSnapshot implements AudioListener {
+	private static class Buffer {
+		private final float[] left;
+		private final float[] right;
+		private int size = 0;
+		private long sequence = 0;
+
+		private Buffer(int capacity) {
+			left = new float[capacity];
+			right = new float[capacity];
+		}
+	}
+
+	// Owned by the audio thread.
+	private Buffer back;
+	private long written = 0;
+	private final AtomicReference<Buffer> latest;
+	// Owned by the animation thread.
+	private Buffer front;
+
+	/**
+	 * @param bufferSize
+	 *            The buffer size of the source. Longer buffers are cut to it.
+	 * @throws IllegalArgumentException
+	 */
+	public AudioSnapshot(int bufferSize) throws IllegalArgumentException {
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("The buffer size must be at least 1. Given: " + bufferSize);
+		back = new Buffer(bufferSize);
+		latest = new AtomicReference<Buffer>(new Buffer(bufferSize));
+		front = new Buffer(bufferSize);
+	}
+
+	/**
+	 * Called by the audio thread with a mono buffer, which is copied to both channels.
+	 */
+	@Override
+	public void samples(float[] samp) {
+		samples(samp, samp);
+	}
+
+	/**
+	 * Called by the audio thread with a stereo buffer.
+	 */
+	@Override
+	public void samples(float[] sampL, float[] sampR) {
+		Buffer buffer = back;
+		int size = Math.min(buffer.left.length, Math.min(sampL.length, sampR.length));
+		System.arraycopy(sampL, 0, buffer.left, 0, size);
+		System.arraycopy(sampR, 0, buffer.right, 0, size);
+		buffer.size = size;
+		buffer.sequence = ++written;
+		back = latest.getAndSet(buffer);
+	}
+
+	/**
+	 * Take the newest complete buffer, if there is one draw() has not had yet. Call from the animation thread only.
+	 *
+	 * @return Whether the buffer changed.
+	 */
+	public boolean update() {
+		if (latest.get().sequence <= front.sequence)
+			return false;
+		front = latest.getAndSet(front);
+		return true;
+	}
+
+	/**
+	 * @return The left channel of the buffer taken by update(). Only the first size() samples are valid.
+	 */
+	public float[] getLeft() {
+		return front.left;
+	}
+
+	/**
+	 * @return The right channel of the buffer taken by update(). Only the first size() samples are valid.
+	 */
+	public float[] getRight() {
+		return front.right;
+	}
+
+	/**
+	 * @return The number of samples in the buffer taken by update(), 0 before the first.
+	 */
+	public int size() {
+		return front.size;
+	}
+
+	/**
+	 * @return How many buffers the audio thread had completed when the one taken by update() was written, 0 before the first.
+	 */
+	public long getSequence() {
+		return front.sequence;
+	}
+}
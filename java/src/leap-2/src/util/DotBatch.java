@@ -0,0 +1,254 @@
+package util;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+
+/**
+ * Draws many dots at once, grouped by style (fill, stroke, stroke weight and alpha), so the renderer state is set once per style instead of
+ * once or twice per dot as ShapeUtil.drawCircle() does.
+ *
+ * With an OpenGL renderer (P2D or P3D) each style is sent as a single TRIANGLES shape, the fills and stroke rings tessellated from a shared
+ * sine table. The Java2D renderer fills triangles one at a time, so there each style is drawn with ellipse() after setting its state once.
+ *
+ * Dots are drawn in the order they were added within a style, and styles in the order they were first used. Call clear() and add the dots
+ * again each frame; the arrays grow as needed and are reused, so a steady number of dots and styles allocates nothing.
+ */
+public class DotBatch {
+	private static final int MAX_SEGMENTS = 64;
+	private static final int MIN_SEGMENTS = 8;
+	// About one segment per this many pixels of circumference.
+	private static final float SEGMENT_LENGTH = 6;
+	private static final float[] COS = new float[MAX_SEGMENTS + 1];
+	private static final float[] SIN = new float[MAX_SEGMENTS + 1];
+
+	static {
+		for (int i = 0; i <= MAX_SEGMENTS; i++) {
+			COS[i] = (float) Math.cos(i * 2 * Math.PI / MAX_SEGMENTS);
+			SIN[i] = (float) Math.sin(i * 2 * Math.PI / MAX_SEGMENTS);
+		}
+	}
+
+	// Per dot.
+	private int count = 0;
+	private float[] xs = new float[64];
+	private float[] ys = new float[64];
+	private float[] radii = new float[64];
+	private int[] dotStyles = new int[64];
+
+	// Per style: the fill (ARGB), the stroke (ARGB, or 0 for none) and the stroke weight.
+	private int styleCount = 0;
+	private int[] fills = new int[8];
+	private int[] strokes = new int[8];
+	private int[] strokeWeights = new int[8];
+	private int lastStyle = -1;
+
+	// Dot indices sorted by style, and where each style starts in them.
+	private int[] order = new int[64];
+	private int[] styleStarts = new int[9];
+	private int[] cursors = new int[8];
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Remove all dots and styles.
+	 */
+	public void clear() {
+		count = 0;
+		styleCount = 0;
+		lastStyle = -1;
+	}
+
+	/**
+	 * Add a dot, styled as ShapeUtil.drawCircle() would draw it.
+	 *
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param fill
+	 * @param stroke
+	 *            A stroke of any length but 3 means no stroke.
+	 * @param strokeWeight
+	 * @param alpha
+	 *            Of the fill.
+	 */
+	public void add(float x, float y, float radius, int[] fill, int[] stroke, int strokeWeight, float alpha) {
+		int fillColor = color(fill[0], fill[1], fill[2], alpha);
+		int strokeColor = stroke.length == 3 ? color(stroke[0], stroke[1], stroke[2], ShapeUtil.DEFAULT_ALPHA_MAX) : 0;
+		add(x, y, radius, style(fillColor, strokeColor, stroke.length == 3 ? strokeWeight : 0));
+	}
+
+	public void add(float x, float y, float radius, int[] fill) {
+		add(x, y, radius, fill, ShapeUtil.DEFAULT_STROKE_COLOR, ShapeUtil.DEFAULT_STROKE_WEIGHT, ShapeUtil.DEFAULT_ALPHA_MAX);
+	}
+
+	public void add(Dot dot) {
+		add(dot.getCenter().x, dot.getCenter().y, dot.getRadius(), dot.getInnerRgb(), dot.getOuterRgb(), dot.getStrokeWeight(), dot.getAlpha());
+	}
+
+	/**
+	 * Draw the dots, then restore the stroke as ShapeUtil.drawCircle() leaves it.
+	 *
+	 * @param pApplet
+	 */
+	public void draw(PApplet pApplet) {
+		sortByStyle();
+		boolean gl = pApplet.g.isGL();
+		for (int s = 0; s < styleCount; s++) {
+			if (styleStarts[s] == styleStarts[s + 1])
+				continue;
+			if (gl)
+				drawTriangles(pApplet, s);
+			else
+				drawEllipses(pApplet, s);
+		}
+		pApplet.stroke(ShapeUtil.DEFAULT_STROKE_COLOR[0], ShapeUtil.DEFAULT_STROKE_COLOR[1], ShapeUtil.DEFAULT_STROKE_COLOR[2]);
+		pApplet.strokeWeight(ShapeUtil.DEFAULT_STROKE_WEIGHT);
+	}
+
+	private void drawEllipses(PApplet pApplet, int s) {
+		if (strokes[s] != 0) {
+			pApplet.strokeWeight(strokeWeights[s]);
+			pApplet.stroke(strokes[s]);
+		} else {
+			pApplet.noStroke();
+		}
+		fill(pApplet, fills[s]);
+		for (int o = styleStarts[s]; o < styleStarts[s + 1]; o++) {
+			int d = order[o];
+			pApplet.ellipse(xs[d], ys[d], radii[d] * 2, radii[d] * 2);
+		}
+	}
+
+	/**
+	 * Send every dot of a style as one shape: a fan for the fill, then a ring of the stroke weight around it.
+	 */
+	private void drawTriangles(PApplet pApplet, int s) {
+		float halfWeight = strokeWeights[s] / 2f;
+		pApplet.noStroke();
+		pApplet.beginShape(PConstants.TRIANGLES);
+		for (int o = styleStarts[s]; o < styleStarts[s + 1]; o++) {
+			int d = order[o];
+			float x = xs[d];
+			float y = ys[d];
+			float r = radii[d];
+			int step = MAX_SEGMENTS / segments(r + halfWeight);
+
+			fill(pApplet, fills[s]);
+			float inner = strokes[s] != 0 ? Math.max(0, r - halfWeight) : r;
+			for (int i = 0; i < MAX_SEGMENTS; i += step) {
+				pApplet.vertex(x, y);
+				pApplet.vertex(x + COS[i] * inner, y + SIN[i] * inner);
+				pApplet.vertex(x + COS[i + step] * inner, y + SIN[i + step] * inner);
+			}
+
+			if (strokes[s] != 0) {
+				fill(pApplet, strokes[s]);
+				float outer = r + halfWeight;
+				for (int i = 0; i < MAX_SEGMENTS; i += step) {
+					float x0 = COS[i], y0 = SIN[i], x1 = COS[i + step], y1 = SIN[i + step];
+					pApplet.vertex(x + x0 * inner, y + y0 * inner);
+					pApplet.vertex(x + x0 * outer, y + y0 * outer);
+					pApplet.vertex(x + x1 * outer, y + y1 * outer);
+					pApplet.vertex(x + x0 * inner, y + y0 * inner);
+					pApplet.vertex(x + x1 * outer, y + y1 * outer);
+					pApplet.vertex(x + x1 * inner, y + y1 * inner);
+				}
+			}
+		}
+		pApplet.endShape();
+	}
+
+	/**
+	 * @return The number of segments for a circle, a power of two so it divides the sine table evenly.
+	 */
+	private static int segments(float radius) {
+		int segments = MIN_SEGMENTS;
+		float circumference = 2 * (float) Math.PI * radius;
+		while (segments < MAX_SEGMENTS && segments * SEGMENT_LENGTH < circumference)
+			segments *= 2;
+		return segments;
+	}
+
+	private void add(float x, float y, float radius, int style) {
+		if (count == xs.length) {
+			int capacity = count * 2;
+			xs = copyOf(xs, capacity);
+			ys = copyOf(ys, capacity);
+			radii = copyOf(radii, capacity);
+			dotStyles = copyOf(dotStyles, capacity);
+			order = new int[capacity];
+		}
+		xs[count] = x;
+		ys[count] = y;
+		radii[count] = radius;
+		dotStyles[count] = style;
+		count++;
+	}
+
+	/**
+	 * @return The id of a style, adding it if it is new.
+	 */
+	private int style(int fillColor, int strokeColor, int strokeWeight) {
+		// Dots tend to come in runs of the same style, and there are only a few styles.
+		if (lastStyle >= 0 && fills[lastStyle] == fillColor && strokes[lastStyle] == strokeColor && strokeWeights[lastStyle] == strokeWeight)
+			return lastStyle;
+		for (int s = 0; s < styleCount; s++) {
+			if (fills[s] == fillColor && strokes[s] == strokeColor && strokeWeights[s] == strokeWeight)
+				return lastStyle = s;
+		}
+
+		if (styleCount == fills.length) {
+			fills = copyOf(fills, styleCount * 2);
+			strokes = copyOf(strokes, styleCount * 2);
+			strokeWeights = copyOf(strokeWeights, styleCount * 2);
+			styleStarts = new int[styleCount * 2 + 1];
+			cursors = new int[styleCount * 2];
+		}
+		fills[styleCount] = fillColor;
+		strokes[styleCount] = strokeColor;
+		strokeWeights[styleCount] = strokeWeight;
+		return lastStyle = styleCount++;
+	}
+
+	/**
+	 * Counting sort of the dot indices by style, which keeps the order the dots were added in within each style.
+	 */
+	private void sortByStyle() {
+		for (int s = 0; s <= styleCount; s++)
+			styleStarts[s] = 0;
+		for (int d = 0; d < count; d++)
+			styleStarts[dotStyles[d] + 1]++;
+		for (int s = 0; s < styleCount; s++)
+			styleStarts[s + 1] += styleStarts[s];
+		System.arraycopy(styleStarts, 0, cursors, 0, styleCount);
+		for (int d = 0; d < count; d++)
+			order[cursors[dotStyles[d]]++] = d;
+	}
+
+	/**
+	 * Set the fill from an ARGB color. fill(int) would take a color with no alpha and a small value for a gray level.
+	 */
+	private static void fill(PApplet pApplet, int argb) {
+		pApplet.fill((argb >> 16) & 0xff, (argb >> 8) & 0xff, argb & 0xff, (argb >>> 24));
+	}
+
+	private static int color(int r, int g, int b, float alpha) {
+		int a = (int) alpha;
+		a = a < 0 ? 0 : a > 255 ? 255 : a;
+		return (a << 24) | ((r & 0xff) << 16) | ((g & 0xff) << 8) | (b & 0xff);
+	}
+
+	private static float[] copyOf(float[] array, int length) {
+		float[] copy = new float[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+}
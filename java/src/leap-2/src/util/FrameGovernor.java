@@ -0,0 +1,203 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import processing.core.PApplet;
+
+/**
+ * Holds a sketch at a target frame rate by stepping quality knobs down when draws run over budget and back up when there is room again.
+ *
+ * Call register() from setup(). PApplet then calls pre() before each draw() and post() after the frame has been ended, so the governor times
+ * draw() together with endDraw(), where OpenGL renderers do most of their work. It keeps a rolling window of how long each frame's work took
+ * and how long each frame took from one to the next. Once the window is full it compares the means with the budget (1 / target fps): if the
+ * frames are late or the work uses most of the budget, one knob is stepped down; if the frames are on time and the work uses well under
+ * half of it, one knob is stepped up. The window then starts over, so each step is measured before the next one.
+ *
+ * A step up that makes the frames go over budget again is undone in the next window. Each time that happens, the governor waits twice as
+ * many windows before trying that step again, so a knob on the edge of the budget settles instead of flipping every window.
+ *
+ * Knobs are stepped down in the order they were added and back up in the reverse order, so add the one that costs the least to lose first.
+ */
+public class FrameGovernor {
+	public static final int DEFAULT_WINDOW = 30;
+
+	// Fractions of the budget.
+	private static final float LATE = 1.1f;
+	private static final float HIGH_WATER = 0.85f;
+	private static final float LOW_WATER = 0.45f;
+	// Windows to wait before stepping up again after a step up was undone.
+	private static final int MIN_BACKOFF = 2;
+	private static final int MAX_BACKOFF = 64;
+
+	/**
+	 * A quality setting that the governor can step. Level 0 is the cheapest and getLevelCount() - 1 the best.
+	 */
+	public interface Knob {
+		int getLevelCount();
+
+		void setLevel(int level);
+	}
+
+	private final long budgetNanos;
+	private final long[] drawNanos;
+	private final long[] frameNanos;
+	private int samples = 0;
+	private int next = 0;
+	private long drawStart = 0;
+	// Whether the time since the previous draw is known, i.e. this is not the first draw.
+	private boolean frameTimed = false;
+	private final List<Knob> knobs = new ArrayList<Knob>();
+	private final List<Integer> levels = new ArrayList<Integer>();
+	private int stepCount = 0;
+	// Whether the last window stepped up, and how many windows to wait before the next step up.
+	private boolean steppedUp = false;
+	private int backoff = MIN_BACKOFF;
+	private int cooldown = 0;
+
+	public FrameGovernor(float targetFps) throws IllegalArgumentException {
+		this(targetFps, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * @param targetFps
+	 * @param window
+	 *            The number of draws to average over before deciding on a step.
+	 * @throws IllegalArgumentException
+	 */
+	public FrameGovernor(float targetFps, int window) throws IllegalArgumentException {
+		if (targetFps <= 0 || window < 1)
+			throw new IllegalArgumentException("Invalid governor parameters. Given: targetFps=" + targetFps + ", window=" + window);
+		budgetNanos = (long) (1000000000L / targetFps);
+		drawNanos = new long[window];
+		frameNanos = new long[window];
+	}
+
+	/**
+	 * Add a knob and set it to its best level.
+	 *
+	 * @param knob
+	 * @throws IllegalArgumentException
+	 */
+	public void addKnob(Knob knob) throws IllegalArgumentException {
+		if (knob.getLevelCount() < 1)
+			throw new IllegalArgumentException("A knob needs at least one level. Given: " + knob.getLevelCount());
+		knobs.add(knob);
+		levels.add(knob.getLevelCount() - 1);
+		knob.setLevel(knob.getLevelCount() - 1);
+	}
+
+	/**
+	 * @param knob
+	 *            The index of the knob, in the order they were added.
+	 * @return The level the knob is set to.
+	 */
+	public int getLevel(int knob) {
+		return levels.get(knob);
+	}
+
+	/**
+	 * @return The number of times a knob has been stepped.
+	 */
+	public int getStepCount() {
+		return stepCount;
+	}
+
+	public float getBudgetMillis() {
+		return budgetNanos / 1000000f;
+	}
+
+	/**
+	 * @return The mean time spent in draw() and endDraw() over the current window, in milliseconds.
+	 */
+	public float getMeanDrawMillis() {
+		return mean(drawNanos) / 1000000f;
+	}
+
+	/**
+	 * Have PApplet call pre() and post() every frame. Call from setup().
+	 *
+	 * @param pApplet
+	 */
+	public void register(PApplet pApplet) {
+		pApplet.registerMethod("pre", this);
+		pApplet.registerMethod("post", this);
+	}
+
+	/**
+	 * Called by PApplet before draw().
+	 */
+	public void pre() {
+		long now = System.nanoTime();
+		frameTimed = drawStart != 0;
+		if (frameTimed)
+			frameNanos[next] = now - drawStart;
+		drawStart = now;
+	}
+
+	/**
+	 * Called by PApplet after the frame has been ended.
+	 */
+	public void post() {
+		if (!frameTimed)
+			return;
+		drawNanos[next] = System.nanoTime() - drawStart;
+		next = (next + 1) % drawNanos.length;
+		if (++samples < drawNanos.length)
+			return;
+
+		long meanDraw = mean(drawNanos);
+		long meanFrame = mean(frameNanos);
+		boolean late = meanFrame > budgetNanos * LATE;
+		if (late || meanDraw > budgetNanos * HIGH_WATER) {
+			if (steppedUp) {
+				// The last step up did not fit: wait longer before trying it again.
+				backoff = Math.min(backoff * 2, MAX_BACKOFF);
+				cooldown = backoff;
+			}
+			steppedUp = false;
+			stepDown();
+		} else {
+			if (steppedUp)
+				backoff = MIN_BACKOFF;
+			steppedUp = false;
+			if (cooldown > 0)
+				cooldown--;
+			else if (meanDraw < budgetNanos * LOW_WATER)
+				steppedUp = stepUp();
+		}
+		samples = 0;
+	}
+
+	private void stepDown() {
+		for (int k = 0; k < knobs.size(); k++) {
+			if (levels.get(k) > 0) {
+				setLevel(k, levels.get(k) - 1);
+				return;
+			}
+		}
+	}
+
+	private boolean stepUp() {
+		for (int k = knobs.size() - 1; k >= 0; k--) {
+			if (levels.get(k) < knobs.get(k).getLevelCount() - 1) {
+				setLevel(k, levels.get(k) + 1);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void setLevel(int k, int level) {
+		levels.set(k, level);
+		knobs.get(k).setLevel(level);
+		stepCount++;
+	}
+
+	private long mean(long[] nanos) {
+		long sum = 0;
+		for (int i = 0; i < nanos.length; i++)
+			sum += nanos[i];
+		return sum / nanos.length;
+	}
+}
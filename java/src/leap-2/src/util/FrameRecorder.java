@@ -0,0 +1,63 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records FrameSnapshots to a memory-mapped, columnar recording file (see FrameRecordingFormat) that can be read back with FrameRecording.
+ *
+ * Writing a frame is a handful of absolute puts into a mapped buffer and does not allocate; a new chunk is mapped once every
+ * FrameRecordingFormat.CHUNK_FRAMES frames. The frame count in the header is updated after every frame, so a recording is readable even if the
+ * program dies without calling close().
+ */
+public class FrameRecorder {
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private MappedByteBuffer chunk;
+	private int frameCount = 0;
+
+	public FrameRecorder(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		this.file.setLength(0);
+		this.channel = this.file.getChannel();
+
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, FrameRecordingFormat.HEADER_BYTES);
+		header.putInt(FrameRecordingFormat.HEADER_MAGIC, FrameRecordingFormat.MAGIC);
+		header.putInt(FrameRecordingFormat.HEADER_VERSION, FrameRecordingFormat.VERSION);
+		header.putInt(FrameRecordingFormat.HEADER_CHUNK_FRAMES, FrameRecordingFormat.CHUNK_FRAMES);
+		header.putInt(FrameRecordingFormat.HEADER_FRAME_COUNT, 0);
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Append a frame to the recording.
+	 *
+	 * @param frame
+	 * @throws IOException
+	 */
+	public void write(FrameSnapshot frame) throws IOException {
+		int slot = frameCount % FrameRecordingFormat.CHUNK_FRAMES;
+		if (slot == 0)
+			chunk = channel.map(FileChannel.MapMode.READ_WRITE, FrameRecordingFormat.chunkPosition(frameCount / FrameRecordingFormat.CHUNK_FRAMES),
+					FrameRecordingFormat.CHUNK_BYTES);
+
+		FrameRecordingFormat.write(chunk, slot, frame);
+		frameCount++;
+		header.putInt(FrameRecordingFormat.HEADER_FRAME_COUNT, frameCount);
+	}
+
+	public void close() throws IOException {
+		header.force();
+		if (chunk != null)
+			chunk.force();
+		channel.close();
+		file.close();
+	}
+}
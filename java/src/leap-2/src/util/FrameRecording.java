@@ -0,0 +1,158 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a recording written by FrameRecorder. The file is memory-mapped, so frames are read straight from the page cache into a FrameSnapshot
+ * without any intermediate objects.
+ *
+ * Frames can be looked up by index directly, and by frame id or timestamp through a sparse index that is built when the recording is opened:
+ * one entry per ID_INDEX_INTERVAL frame ids and one per TIME_INDEX_INTERVAL microseconds. A lookup goes straight to the right index entry and
+ * then scans at most one interval's worth of frames.
+ */
+public class FrameRecording {
+	public static final int ID_INDEX_INTERVAL = 64;
+	public static final long TIME_INDEX_INTERVAL = 100000; // Microseconds.
+
+	private final MappedByteBuffer[] chunks;
+	private final int frameCount;
+	private final long firstId;
+	private final long firstTimestamp;
+	// idIndex[b] is the index of the first frame with an id >= firstId + b * ID_INDEX_INTERVAL.
+	private final int[] idIndex;
+	// timeIndex[b] is the index of the first frame with a timestamp >= firstTimestamp + b * TIME_INDEX_INTERVAL.
+	private final int[] timeIndex;
+
+	public FrameRecording(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() < FrameRecordingFormat.HEADER_BYTES)
+				throw new IOException("Not a frame recording: " + file);
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FrameRecordingFormat.HEADER_BYTES);
+			if (header.getInt(FrameRecordingFormat.HEADER_MAGIC) != FrameRecordingFormat.MAGIC)
+				throw new IOException("Not a frame recording: " + file);
+			if (header.getInt(FrameRecordingFormat.HEADER_VERSION) != FrameRecordingFormat.VERSION
+					|| header.getInt(FrameRecordingFormat.HEADER_CHUNK_FRAMES) != FrameRecordingFormat.CHUNK_FRAMES)
+				throw new IOException("Unsupported frame recording version: " + file);
+
+			frameCount = header.getInt(FrameRecordingFormat.HEADER_FRAME_COUNT);
+			chunks = new MappedByteBuffer[(frameCount + FrameRecordingFormat.CHUNK_FRAMES - 1) / FrameRecordingFormat.CHUNK_FRAMES];
+			for (int i = 0; i < chunks.length; i++)
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, FrameRecordingFormat.chunkPosition(i), FrameRecordingFormat.CHUNK_BYTES);
+		} finally {
+			// The mappings stay valid after the channel is closed.
+			raf.close();
+		}
+
+		if (frameCount == 0) {
+			firstId = 0;
+			firstTimestamp = 0;
+			idIndex = new int[0];
+			timeIndex = new int[0];
+			return;
+		}
+
+		firstId = getId(0);
+		firstTimestamp = getTimestamp(0);
+		idIndex = new int[(int) ((getId(frameCount - 1) - firstId) / ID_INDEX_INTERVAL) + 1];
+		timeIndex = new int[(int) ((getTimestamp(frameCount - 1) - firstTimestamp) / TIME_INDEX_INTERVAL) + 1];
+		int idBucket = 0;
+		int timeBucket = 0;
+		for (int i = 0; i < frameCount; i++) {
+			int frameIdBucket = (int) ((getId(i) - firstId) / ID_INDEX_INTERVAL);
+			while (idBucket <= frameIdBucket && idBucket < idIndex.length)
+				idIndex[idBucket++] = i;
+			int frameTimeBucket = (int) ((getTimestamp(i) - firstTimestamp) / TIME_INDEX_INTERVAL);
+			while (timeBucket <= frameTimeBucket && timeBucket < timeIndex.length)
+				timeIndex[timeBucket++] = i;
+		}
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	public long getId(int index) {
+		return chunk(index).getLong(FrameRecordingFormat.offset(FrameRecordingFormat.COL_ID, slot(index)));
+	}
+
+	/**
+	 * @param index
+	 * @return The device timestamp of the frame, in microseconds.
+	 */
+	public long getTimestamp(int index) {
+		return chunk(index).getLong(FrameRecordingFormat.offset(FrameRecordingFormat.COL_TIMESTAMP, slot(index)));
+	}
+
+	/**
+	 * Read a frame into a snapshot.
+	 *
+	 * @param index
+	 * @param frame
+	 */
+	public void read(int index, FrameSnapshot frame) {
+		if (index < 0 || index >= frameCount)
+			throw new IndexOutOfBoundsException("Frame " + index + " is not in the recording (" + frameCount + " frames).");
+		FrameRecordingFormat.read(chunk(index), slot(index), frame);
+	}
+
+	/**
+	 * Find a frame by its Leap Motion frame id.
+	 *
+	 * @param id
+	 * @return The index of the frame with the given id (or the first frame after it if that frame was not recorded), or -1 if the id is after
+	 *         the end of the recording.
+	 */
+	public int seekId(long id) {
+		if (frameCount == 0)
+			return -1;
+		if (id < firstId)
+			return 0;
+		long bucket = (id - firstId) / ID_INDEX_INTERVAL;
+		if (bucket >= idIndex.length)
+			return getId(frameCount - 1) >= id ? frameCount - 1 : -1;
+
+		int index = idIndex[(int) bucket];
+		while (index < frameCount && getId(index) < id)
+			index++;
+		return index < frameCount ? index : -1;
+	}
+
+	/**
+	 * Find the frame that was current at a given time.
+	 *
+	 * @param timestamp
+	 *            A device timestamp in microseconds.
+	 * @return The index of the last frame recorded at or before the timestamp (or 0 if the timestamp is before the start), or -1 if the recording
+	 *         is empty.
+	 */
+	public int seekTimestamp(long timestamp) {
+		if (frameCount == 0)
+			return -1;
+		if (timestamp < firstTimestamp)
+			return 0;
+		long bucket = (timestamp - firstTimestamp) / TIME_INDEX_INTERVAL;
+		if (bucket >= timeIndex.length)
+			return frameCount - 1;
+
+		int index = timeIndex[(int) bucket];
+		while (index + 1 < frameCount && getTimestamp(index + 1) <= timestamp)
+			index++;
+		if (index > 0 && getTimestamp(index) > timestamp)
+			index--;
+		return index;
+	}
+
+	private MappedByteBuffer chunk(int index) {
+		return chunks[index / FrameRecordingFormat.CHUNK_FRAMES];
+	}
+
+	private static int slot(int index) {
+		return index % FrameRecordingFormat.CHUNK_FRAMES;
+	}
+}
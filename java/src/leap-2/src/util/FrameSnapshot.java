@@ -0,0 +1,486 @@
+package util;
+
+/**
+ * A plain Java copy of the parts of a Leap Motion frame that the sketches use (hands, pointables, gestures and the interaction box). Unlike
+ * com.leapmotion.leap.Frame it has no native backing, so it can be recorded, replayed and read without a device.
+ */
+public class FrameSnapshot {
+	public static final int MAX_HANDS = 4;
+	public static final int MAX_POINTABLES = 20;
+	public static final int MAX_GESTURES = 10;
+
+	// Gesture types.
+	public static final int GESTURE_INVALID = 0;
+	public static final int GESTURE_SWIPE = 1;
+	public static final int GESTURE_CIRCLE = 2;
+	public static final int GESTURE_SCREEN_TAP = 3;
+	public static final int GESTURE_KEY_TAP = 4;
+
+	// Gesture states.
+	public static final int STATE_INVALID = 0;
+	public static final int STATE_START = 1;
+	public static final int STATE_UPDATE = 2;
+	public static final int STATE_STOP = 3;
+
+	private long id;
+	private long timestamp;
+	private float framesPerSecond;
+
+	// Interaction box, stored as center and size.
+	private final float[] boxCenter = new float[3];
+	private final float[] boxSize = new float[] { 1, 1, 1 };
+
+	private int handCount;
+	private final int[] handIds = new int[MAX_HANDS];
+	private final float[] palmPositions = new float[MAX_HANDS * 3];
+
+	private int pointableCount;
+	private final int[] pointableIds = new int[MAX_POINTABLES];
+	private final int[] pointableHands = new int[MAX_POINTABLES];
+	private final boolean[] pointableTools = new boolean[MAX_POINTABLES];
+	private final float[] tipPositions = new float[MAX_POINTABLES * 3];
+	private final float[] directions = new float[MAX_POINTABLES * 3];
+
+	private int gestureCount;
+	private final int[] gestureIds = new int[MAX_GESTURES];
+	private final int[] gestureTypes = new int[MAX_GESTURES];
+	private final int[] gestureStates = new int[MAX_GESTURES];
+	private final int[] gesturePointableIds = new int[MAX_GESTURES];
+	private final float[] gestureProgress = new float[MAX_GESTURES];
+	private final boolean[] gestureClockwise = new boolean[MAX_GESTURES];
+	private final float[] gesturePositions = new float[MAX_GESTURES * 3];
+	private final float[] gestureDirections = new float[MAX_GESTURES * 3];
+
+	/**
+	 * Clear all hands, pointables and gestures so that the snapshot can be filled again.
+	 */
+	public void reset() {
+		id = 0;
+		timestamp = 0;
+		framesPerSecond = 0;
+		handCount = 0;
+		pointableCount = 0;
+		gestureCount = 0;
+	}
+
+	/**
+	 * Remove all gestures, e.g. to replace the device's gestures with ones recognized on the host.
+	 */
+	public void clearGestures() {
+		gestureCount = 0;
+	}
+
+	/**
+	 * Copy the contents of another snapshot into this one.
+	 *
+	 * @param other
+	 */
+	public void copyFrom(FrameSnapshot other) {
+		id = other.id;
+		timestamp = other.timestamp;
+		framesPerSecond = other.framesPerSecond;
+		System.arraycopy(other.boxCenter, 0, boxCenter, 0, 3);
+		System.arraycopy(other.boxSize, 0, boxSize, 0, 3);
+
+		handCount = other.handCount;
+		System.arraycopy(other.handIds, 0, handIds, 0, handCount);
+		System.arraycopy(other.palmPositions, 0, palmPositions, 0, handCount * 3);
+
+		pointableCount = other.pointableCount;
+		System.arraycopy(other.pointableIds, 0, pointableIds, 0, pointableCount);
+		System.arraycopy(other.pointableHands, 0, pointableHands, 0, pointableCount);
+		System.arraycopy(other.pointableTools, 0, pointableTools, 0, pointableCount);
+		System.arraycopy(other.tipPositions, 0, tipPositions, 0, pointableCount * 3);
+		System.arraycopy(other.directions, 0, directions, 0, pointableCount * 3);
+
+		gestureCount = other.gestureCount;
+		System.arraycopy(other.gestureIds, 0, gestureIds, 0, gestureCount);
+		System.arraycopy(other.gestureTypes, 0, gestureTypes, 0, gestureCount);
+		System.arraycopy(other.gestureStates, 0, gestureStates, 0, gestureCount);
+		System.arraycopy(other.gesturePointableIds, 0, gesturePointableIds, 0, gestureCount);
+		System.arraycopy(other.gestureProgress, 0, gestureProgress, 0, gestureCount);
+		System.arraycopy(other.gestureClockwise, 0, gestureClockwise, 0, gestureCount);
+		System.arraycopy(other.gesturePositions, 0, gesturePositions, 0, gestureCount * 3);
+		System.arraycopy(other.gestureDirections, 0, gestureDirections, 0, gestureCount * 3);
+	}
+
+	public void setFrame(long id, long timestamp, float framesPerSecond) {
+		this.id = id;
+		this.timestamp = timestamp;
+		this.framesPerSecond = framesPerSecond;
+	}
+
+	public void setInteractionBox(float centerX, float centerY, float centerZ, float width, float height, float depth) {
+		boxCenter[0] = centerX;
+		boxCenter[1] = centerY;
+		boxCenter[2] = centerZ;
+		boxSize[0] = width;
+		boxSize[1] = height;
+		boxSize[2] = depth;
+	}
+
+	/**
+	 * Add a hand to the snapshot. Extra hands beyond MAX_HANDS are ignored.
+	 *
+	 * @return The index of the new hand, or -1 if the snapshot is full.
+	 */
+	public int addHand(int handId, float palmX, float palmY, float palmZ) {
+		if (handCount >= MAX_HANDS)
+			return -1;
+		int i = handCount++;
+		handIds[i] = handId;
+		palmPositions[i * 3] = palmX;
+		palmPositions[i * 3 + 1] = palmY;
+		palmPositions[i * 3 + 2] = palmZ;
+		return i;
+	}
+
+	/**
+	 * Add a pointable to the snapshot. Extra pointables beyond MAX_POINTABLES are ignored.
+	 *
+	 * @param pointableId
+	 * @param handIndex
+	 *            The index (not id) of the owning hand in this snapshot, or -1 if it has none.
+	 * @param tool
+	 * @return The index of the new pointable, or -1 if the snapshot is full.
+	 */
+	public int addPointable(int pointableId, int handIndex, boolean tool, float tipX, float tipY, float tipZ, float dirX, float dirY, float dirZ) {
+		if (pointableCount >= MAX_POINTABLES)
+			return -1;
+		int i = pointableCount++;
+		pointableIds[i] = pointableId;
+		pointableHands[i] = handIndex;
+		pointableTools[i] = tool;
+		tipPositions[i * 3] = tipX;
+		tipPositions[i * 3 + 1] = tipY;
+		tipPositions[i * 3 + 2] = tipZ;
+		directions[i * 3] = dirX;
+		directions[i * 3 + 1] = dirY;
+		directions[i * 3 + 2] = dirZ;
+		return i;
+	}
+
+	/**
+	 * Replace the tip position and direction of a pointable already in the snapshot, e.g. with filtered or predicted values.
+	 *
+	 * @param pointable
+	 *            The index of the pointable.
+	 */
+	public void setPointable(int pointable, float tipX, float tipY, float tipZ, float dirX, float dirY, float dirZ) {
+		tipPositions[pointable * 3] = tipX;
+		tipPositions[pointable * 3 + 1] = tipY;
+		tipPositions[pointable * 3 + 2] = tipZ;
+		directions[pointable * 3] = dirX;
+		directions[pointable * 3 + 1] = dirY;
+		directions[pointable * 3 + 2] = dirZ;
+	}
+
+	/**
+	 * Add a gesture to the snapshot. For swipes and taps, position and direction are those of the gesture; for circles they are the center and
+	 * the normal. Extra gestures beyond MAX_GESTURES are ignored.
+	 *
+	 * @return The index of the new gesture, or -1 if the snapshot is full.
+	 */
+	public int addGesture(int gestureId, int type, int state, int pointableId, float progress, boolean clockwise, float posX, float posY,
+			float posZ, float dirX, float dirY, float dirZ) {
+		if (gestureCount >= MAX_GESTURES)
+			return -1;
+		int i = gestureCount++;
+		gestureIds[i] = gestureId;
+		gestureTypes[i] = type;
+		gestureStates[i] = state;
+		gesturePointableIds[i] = pointableId;
+		gestureProgress[i] = progress;
+		gestureClockwise[i] = clockwise;
+		gesturePositions[i * 3] = posX;
+		gesturePositions[i * 3 + 1] = posY;
+		gesturePositions[i * 3 + 2] = posZ;
+		gestureDirections[i * 3] = dirX;
+		gestureDirections[i * 3 + 1] = dirY;
+		gestureDirections[i * 3 + 2] = dirZ;
+		return i;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return The device timestamp of the frame, in microseconds.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public float getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	public float getBoxCenterX() {
+		return boxCenter[0];
+	}
+
+	public float getBoxCenterY() {
+		return boxCenter[1];
+	}
+
+	public float getBoxCenterZ() {
+		return boxCenter[2];
+	}
+
+	public float getBoxWidth() {
+		return boxSize[0];
+	}
+
+	public float getBoxHeight() {
+		return boxSize[1];
+	}
+
+	public float getBoxDepth() {
+		return boxSize[2];
+	}
+
+	// Hands:
+	public int getHandCount() {
+		return handCount;
+	}
+
+	public int getHandId(int hand) {
+		return handIds[hand];
+	}
+
+	public float getPalmX(int hand) {
+		return palmPositions[hand * 3];
+	}
+
+	public float getPalmY(int hand) {
+		return palmPositions[hand * 3 + 1];
+	}
+
+	public float getPalmZ(int hand) {
+		return palmPositions[hand * 3 + 2];
+	}
+
+	/**
+	 * @return The index of the hand furthest to the left, or -1 if there are no hands.
+	 */
+	public int leftmostHand() {
+		int result = -1;
+		for (int i = 0; i < handCount; i++) {
+			if (result < 0 || palmPositions[i * 3] < palmPositions[result * 3])
+				result = i;
+		}
+		return result;
+	}
+
+	/**
+	 * @return The index of the hand furthest to the right, or -1 if there are no hands.
+	 */
+	public int rightmostHand() {
+		int result = -1;
+		for (int i = 0; i < handCount; i++) {
+			if (result < 0 || palmPositions[i * 3] > palmPositions[result * 3])
+				result = i;
+		}
+		return result;
+	}
+
+	// Pointables:
+	public int getPointableCount() {
+		return pointableCount;
+	}
+
+	/**
+	 * @param hand
+	 * @return The number of pointables attached to the given hand index.
+	 */
+	public int getPointableCount(int hand) {
+		int count = 0;
+		for (int i = 0; i < pointableCount; i++) {
+			if (pointableHands[i] == hand)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of pointables that are fingers rather than tools.
+	 */
+	public int getFingerCount() {
+		int count = 0;
+		for (int i = 0; i < pointableCount; i++) {
+			if (!pointableTools[i])
+				count++;
+		}
+		return count;
+	}
+
+	public int getPointableId(int pointable) {
+		return pointableIds[pointable];
+	}
+
+	public int getPointableHand(int pointable) {
+		return pointableHands[pointable];
+	}
+
+	public boolean isTool(int pointable) {
+		return pointableTools[pointable];
+	}
+
+	public float getTipX(int pointable) {
+		return tipPositions[pointable * 3];
+	}
+
+	public float getTipY(int pointable) {
+		return tipPositions[pointable * 3 + 1];
+	}
+
+	public float getTipZ(int pointable) {
+		return tipPositions[pointable * 3 + 2];
+	}
+
+	/**
+	 * @return The tip positions of all pointables as x, y, z triples in pointable order, for batch processing within this package. Do not modify.
+	 */
+	float[] tipPositions() {
+		return tipPositions;
+	}
+
+	public float getDirectionX(int pointable) {
+		return directions[pointable * 3];
+	}
+
+	public float getDirectionY(int pointable) {
+		return directions[pointable * 3 + 1];
+	}
+
+	public float getDirectionZ(int pointable) {
+		return directions[pointable * 3 + 2];
+	}
+
+	/**
+	 * @param pointableId
+	 * @return The index of the pointable with the given id, or -1 if it is not in this frame.
+	 */
+	public int findPointable(int pointableId) {
+		for (int i = 0; i < pointableCount; i++) {
+			if (pointableIds[i] == pointableId)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The index of the pointable closest to the screen (smallest z), or -1 if there are no pointables.
+	 */
+	public int frontmost() {
+		return frontmost(-1);
+	}
+
+	/**
+	 * @param hand
+	 *            The hand index to restrict the search to, or -1 for all hands.
+	 * @return The index of the pointable closest to the screen (smallest z), or -1 if there are none.
+	 */
+	public int frontmost(int hand) {
+		int result = -1;
+		for (int i = 0; i < pointableCount; i++) {
+			if ((hand < 0 || pointableHands[i] == hand) && (result < 0 || tipPositions[i * 3 + 2] < tipPositions[result * 3 + 2]))
+				result = i;
+		}
+		return result;
+	}
+
+	/**
+	 * @param hand
+	 *            The hand index to restrict the search to, or -1 for all hands.
+	 * @return The index of the pointable furthest to the left, or -1 if there are none.
+	 */
+	public int leftmost(int hand) {
+		int result = -1;
+		for (int i = 0; i < pointableCount; i++) {
+			if ((hand < 0 || pointableHands[i] == hand) && (result < 0 || tipPositions[i * 3] < tipPositions[result * 3]))
+				result = i;
+		}
+		return result;
+	}
+
+	/**
+	 * @param hand
+	 *            The hand index to restrict the search to, or -1 for all hands.
+	 * @return The index of the pointable furthest to the right, or -1 if there are none.
+	 */
+	public int rightmost(int hand) {
+		int result = -1;
+		for (int i = 0; i < pointableCount; i++) {
+			if ((hand < 0 || pointableHands[i] == hand) && (result < 0 || tipPositions[i * 3] > tipPositions[result * 3]))
+				result = i;
+		}
+		return result;
+	}
+
+	// Gestures:
+	public int getGestureCount() {
+		return gestureCount;
+	}
+
+	public int getGestureId(int gesture) {
+		return gestureIds[gesture];
+	}
+
+	public int getGestureType(int gesture) {
+		return gestureTypes[gesture];
+	}
+
+	public int getGestureState(int gesture) {
+		return gestureStates[gesture];
+	}
+
+	public int getGesturePointableId(int gesture) {
+		return gesturePointableIds[gesture];
+	}
+
+	public float getGestureProgress(int gesture) {
+		return gestureProgress[gesture];
+	}
+
+	public boolean isGestureClockwise(int gesture) {
+		return gestureClockwise[gesture];
+	}
+
+	public float getGestureX(int gesture) {
+		return gesturePositions[gesture * 3];
+	}
+
+	public float getGestureY(int gesture) {
+		return gesturePositions[gesture * 3 + 1];
+	}
+
+	public float getGestureZ(int gesture) {
+		return gesturePositions[gesture * 3 + 2];
+	}
+
+	public float getGestureDirectionX(int gesture) {
+		return gestureDirections[gesture * 3];
+	}
+
+	public float getGestureDirectionY(int gesture) {
+		return gestureDirections[gesture * 3 + 1];
+	}
+
+	public float getGestureDirectionZ(int gesture) {
+		return gestureDirections[gesture * 3 + 2];
+	}
+
+	/**
+	 * @param gestureId
+	 * @return The index of the gesture with the given id, or -1 if it is not in this frame.
+	 */
+	public int findGesture(int gestureId) {
+		for (int i = 0; i < gestureCount; i++) {
+			if (gestureIds[i] == gestureId)
+				return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,325 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delivers gestures to handlers registered per gesture type, instead of each sketch switching over the gestures of every frame in draw().
+ *
+ * Frames are posted as they arrive (e.g. while draining FrameSource.nextFrame()); post() may be called from any thread. Their gestures go into
+ * a bounded queue of preallocated events, where an update replaces a queued update of the same gesture, so a handler sees at most one update
+ * per gesture each time the queue is drained. dispatch() drains the queue, once per draw(), and calls the start, update or stop method of the
+ * handlers for each event, outside of the lock so posting is never held up by a handler.
+ */
+public class GestureBus {
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final int TYPES = FrameSnapshot.GESTURE_KEY_TAP + 1;
+	// Number of in-progress gestures whose progress is remembered for the swept angle.
+	private static final int MAX_TRACKED = FrameSnapshot.MAX_GESTURES * 2;
+
+	/**
+	 * Receives the events of one gesture type.
+	 */
+	public interface Handler {
+		void start(Event event);
+
+		void update(Event event);
+
+		void stop(Event event);
+	}
+
+	/**
+	 * A Handler that ignores everything, to extend when only some states matter.
+	 */
+	public static class Adapter implements Handler {
+		@Override
+		public void start(Event event) {
+		}
+
+		@Override
+		public void update(Event event) {
+		}
+
+		@Override
+		public void stop(Event event) {
+		}
+	}
+
+	/**
+	 * A gesture at one point in time. Events are reused, so do not keep a reference after the handler returns.
+	 */
+	public static class Event {
+		private int id;
+		private int type;
+		private int state;
+		private int pointableId;
+		private long timestamp;
+		private float progress;
+		private boolean clockwise;
+		private float x, y, z;
+		private float directionX, directionY, directionZ;
+		private float sweptAngle;
+
+		private void set(FrameSnapshot frame, int gesture) {
+			id = frame.getGestureId(gesture);
+			type = frame.getGestureType(gesture);
+			state = frame.getGestureState(gesture);
+			pointableId = frame.getGesturePointableId(gesture);
+			timestamp = frame.getTimestamp();
+			progress = frame.getGestureProgress(gesture);
+			clockwise = frame.isGestureClockwise(gesture);
+			x = frame.getGestureX(gesture);
+			y = frame.getGestureY(gesture);
+			z = frame.getGestureZ(gesture);
+			directionX = frame.getGestureDirectionX(gesture);
+			directionY = frame.getGestureDirectionY(gesture);
+			directionZ = frame.getGestureDirectionZ(gesture);
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * @return One of the FrameSnapshot GESTURE_ constants.
+		 */
+		public int getType() {
+			return type;
+		}
+
+		/**
+		 * @return One of the FrameSnapshot STATE_ constants.
+		 */
+		public int getState() {
+			return state;
+		}
+
+		public int getPointableId() {
+			return pointableId;
+		}
+
+		/**
+		 * @return The device timestamp of the frame the event came from, in microseconds.
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return For circles, the number of turns so far.
+		 */
+		public float getProgress() {
+			return progress;
+		}
+
+		/**
+		 * @return For circles, whether the pointable is going round clockwise.
+		 */
+		public boolean isClockwise() {
+			return clockwise;
+		}
+
+		/**
+		 * @return For circles, the angle swept since the previous event of the gesture was dispatched, in radians.
+		 */
+		public float getSweptAngle() {
+			return sweptAngle;
+		}
+
+		/**
+		 * @return The position (the center for circles), in Leap Motion coordinates.
+		 */
+		public float getX() {
+			return x;
+		}
+
+		public float getY() {
+			return y;
+		}
+
+		public float getZ() {
+			return z;
+		}
+
+		/**
+		 * @return The direction for swipes and taps, or the normal for circles.
+		 */
+		public float getDirectionX() {
+			return directionX;
+		}
+
+		public float getDirectionY() {
+			return directionY;
+		}
+
+		public float getDirectionZ() {
+			return directionZ;
+		}
+	}
+
+	private final List<List<Handler>> handlers = new ArrayList<List<Handler>>();
+
+	// Events waiting to be dispatched, guarded by this. Swapped with dispatching by dispatch().
+	private Event[] pending;
+	private int pendingCount = 0;
+	private Event[] dispatching;
+	private long lastFrameId = -1;
+	private int droppedCount = 0;
+
+	// The progress of in-progress gestures as of their last dispatched event. Only used by the dispatching thread.
+	private final int[] trackedIds = new int[MAX_TRACKED];
+	private final float[] trackedProgress = new float[MAX_TRACKED];
+
+	public GestureBus() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            The most events that can wait to be dispatched. Further events are dropped until the next dispatch().
+	 * @throws IllegalArgumentException
+	 */
+	public GestureBus(int capacity) throws IllegalArgumentException {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1. Given: " + capacity);
+		pending = new Event[capacity];
+		dispatching = new Event[capacity];
+		for (int i = 0; i < capacity; i++) {
+			pending[i] = new Event();
+			dispatching[i] = new Event();
+		}
+		for (int type = 0; type < TYPES; type++)
+			handlers.add(new ArrayList<Handler>());
+	}
+
+	/**
+	 * Register a handler for a gesture type. Call before frames are posted.
+	 *
+	 * @param gestureType
+	 *            One of the FrameSnapshot GESTURE_ constants.
+	 * @param handler
+	 * @throws IllegalArgumentException
+	 */
+	public void addHandler(int gestureType, Handler handler) throws IllegalArgumentException {
+		if (gestureType <= FrameSnapshot.GESTURE_INVALID || gestureType >= TYPES)
+			throw new IllegalArgumentException("Unknown gesture type. Given: " + gestureType);
+		handlers.get(gestureType).add(handler);
+	}
+
+	/**
+	 * Queue the gestures of a frame. A frame with the same id as the last one posted is ignored, so the latest frame can be posted every draw
+	 * even if it was already posted while draining nextFrame().
+	 *
+	 * @param frame
+	 */
+	public synchronized void post(FrameSnapshot frame) {
+		if (frame.getId() == lastFrameId)
+			return;
+		lastFrameId = frame.getId();
+
+		for (int i = 0; i < frame.getGestureCount(); i++) {
+			if (frame.getGestureState(i) == FrameSnapshot.STATE_UPDATE) {
+				int queued = findQueuedUpdate(frame.getGestureId(i));
+				if (queued >= 0) {
+					pending[queued].set(frame, i);
+					continue;
+				}
+			}
+			if (pendingCount == pending.length) {
+				droppedCount++;
+				continue;
+			}
+			pending[pendingCount++].set(frame, i);
+		}
+	}
+
+	/**
+	 * Call the handlers for the events queued since the last call, in the order they were posted.
+	 */
+	public void dispatch() {
+		Event[] events;
+		int count;
+		synchronized (this) {
+			events = pending;
+			count = pendingCount;
+			pending = dispatching;
+			pendingCount = 0;
+			dispatching = events;
+		}
+
+		for (int e = 0; e < count; e++) {
+			Event event = events[e];
+			updateSweptAngle(event);
+			List<Handler> typeHandlers = handlers.get(event.type);
+			for (int h = 0; h < typeHandlers.size(); h++) {
+				Handler handler = typeHandlers.get(h);
+				switch (event.state) {
+				case FrameSnapshot.STATE_START:
+					handler.start(event);
+					break;
+				case FrameSnapshot.STATE_UPDATE:
+					handler.update(event);
+					break;
+				case FrameSnapshot.STATE_STOP:
+					handler.stop(event);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget queued events, e.g. after a pause or a seek.
+	 */
+	public synchronized void clear() {
+		pendingCount = 0;
+		lastFrameId = -1;
+	}
+
+	/**
+	 * @return The number of events dropped because the queue was full.
+	 */
+	public synchronized int getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * @return The index of the queued update of a gesture, or -1 if there is none or other events of the gesture were queued after it.
+	 */
+	private int findQueuedUpdate(int gestureId) {
+		for (int e = pendingCount - 1; e >= 0; e--) {
+			if (pending[e].id == gestureId)
+				return pending[e].state == FrameSnapshot.STATE_UPDATE ? e : -1;
+		}
+		return -1;
+	}
+
+	private void updateSweptAngle(Event event) {
+		// Find the gesture, or a free slot (id 0) for it.
+		int slot = -1;
+		int free = -1;
+		for (int s = 0; s < MAX_TRACKED; s++) {
+			if (trackedIds[s] == event.id) {
+				slot = s;
+				break;
+			}
+			if (trackedIds[s] == 0 && free < 0)
+				free = s;
+		}
+		float previous = slot >= 0 ? trackedProgress[slot] : 0;
+		event.sweptAngle = (event.progress - previous) * 2 * (float) Math.PI;
+
+		if (event.state == FrameSnapshot.STATE_STOP) {
+			if (slot >= 0)
+				trackedIds[slot] = 0;
+			return;
+		}
+		if (slot < 0)
+			slot = free;
+		if (slot >= 0) {
+			trackedIds[slot] = event.id;
+			trackedProgress[slot] = event.progress;
+		}
+	}
+}
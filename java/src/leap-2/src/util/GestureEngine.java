@@ -0,0 +1,509 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Recognizes swipe, circle, screen tap and key tap gestures on the host from the pointables in each frame, instead of relying on the device's
+ * gesture recognition and its global config. Each pointable is tracked by id with a small state machine per gesture type, updated in constant
+ * time per frame from primitive arrays.
+ *
+ * Pass every device frame through process() (e.g. while draining FrameSource.nextFrame()). It returns a copy of the frame with the device's
+ * gestures replaced by the recognized ones, in the same form, so existing gesture handling keeps working. Swipes and circles are reported with
+ * STATE_START, STATE_UPDATE and STATE_STOP like the device does; taps are reported once, with STATE_STOP.
+ *
+ * Because it only needs frame snapshots, the engine runs just as well on a recording. main() plays one back and prints what is recognized, so
+ * the thresholds can be tuned offline.
+ */
+public class GestureEngine {
+	// Defaults, from the Leap Motion config defaults.
+	public static final float DEFAULT_SWIPE_MIN_LENGTH = 150; // mm.
+	public static final float DEFAULT_SWIPE_MIN_VELOCITY = 750; // mm/s.
+	public static final float DEFAULT_CIRCLE_MIN_RADIUS = 5; // mm.
+	public static final float DEFAULT_CIRCLE_MIN_ARC = 1.5f * (float) Math.PI; // Radians.
+	public static final float DEFAULT_TAP_MIN_VELOCITY = 50; // mm/s.
+	public static final float DEFAULT_TAP_MIN_DISTANCE = 5; // mm.
+	public static final float DEFAULT_TAP_HISTORY_SECONDS = 0.1f;
+
+	private static final int MAX_TRACKED = FrameSnapshot.MAX_POINTABLES;
+	private static final float MICROS_PER_SECOND = 1000000f;
+	// Smoothing factor for the velocity estimate.
+	private static final float VELOCITY_SMOOTHING = 0.5f;
+	// A swipe ends when the speed drops below this fraction of the minimum velocity.
+	private static final float SWIPE_STOP_RATIO = 0.5f;
+	// Time constant of the moving average that tracks the center of a circle.
+	private static final float CIRCLE_CENTER_SECONDS = 0.3f;
+	// A circle ends when it turns slower than this (radians per second).
+	private static final float CIRCLE_MIN_ANGULAR_VELOCITY = (float) Math.PI;
+	// Taps: index 0 is a screen tap (forward, along -z), 1 is a key tap (down, along -y).
+	private static final int SCREEN_TAP = 0;
+	private static final int KEY_TAP = 1;
+	private static final int[] TAP_AXES = new int[] { 2, 1 };
+	private static final int[] TAP_TYPES = new int[] { FrameSnapshot.GESTURE_SCREEN_TAP, FrameSnapshot.GESTURE_KEY_TAP };
+
+	private float swipeMinLength = DEFAULT_SWIPE_MIN_LENGTH;
+	private float swipeMinVelocity = DEFAULT_SWIPE_MIN_VELOCITY;
+	private float circleMinRadius = DEFAULT_CIRCLE_MIN_RADIUS;
+	private float circleMinArc = DEFAULT_CIRCLE_MIN_ARC;
+	private float tapMinVelocity = DEFAULT_TAP_MIN_VELOCITY;
+	private float tapMinDistance = DEFAULT_TAP_MIN_DISTANCE;
+	private float tapHistorySeconds = DEFAULT_TAP_HISTORY_SECONDS;
+	private final boolean[] enabled = new boolean[FrameSnapshot.GESTURE_KEY_TAP + 1];
+
+	private final FrameSnapshot output = new FrameSnapshot();
+	private long lastFrameId = -1;
+	private int nextGestureId = 1;
+
+	// Per pointable: tracking.
+	private final boolean[] tracked = new boolean[MAX_TRACKED];
+	private final int[] ids = new int[MAX_TRACKED];
+	private final long[] timestamps = new long[MAX_TRACKED];
+	private final float[] positions = new float[MAX_TRACKED * 3];
+	private final float[] directions = new float[MAX_TRACKED * 3];
+	private final float[] velocities = new float[MAX_TRACKED * 3];
+
+	// Per pointable: swipe.
+	private final boolean[] swipeMoving = new boolean[MAX_TRACKED];
+	private final float[] swipeStarts = new float[MAX_TRACKED * 3];
+	// The id of the gesture being reported, or 0 if none.
+	private final int[] swipeIds = new int[MAX_TRACKED];
+
+	// Per pointable: circle.
+	private final float[] circleCenters = new float[MAX_TRACKED * 3];
+	private final float[] circleAxes = new float[MAX_TRACKED * 3];
+	private final float[] circleRadii = new float[MAX_TRACKED * 3];
+	private final boolean[] circleHasRadius = new boolean[MAX_TRACKED];
+	private final float[] circleSwept = new float[MAX_TRACKED];
+	private final int[] circleIds = new int[MAX_TRACKED];
+
+	// Per pointable and tap type: when and where the tap motion started.
+	private final boolean[] tapMoving = new boolean[MAX_TRACKED * 2];
+	private final long[] tapStartTimes = new long[MAX_TRACKED * 2];
+	private final float[] tapStarts = new float[MAX_TRACKED * 2 * 3];
+
+	private final float[] vector = new float[3];
+
+	/**
+	 * Turn on recognition of a gesture type (one of the FrameSnapshot.GESTURE_* constants). All types are off to begin with.
+	 *
+	 * @param gestureType
+	 * @throws IllegalArgumentException
+	 */
+	public void enableGesture(int gestureType) throws IllegalArgumentException {
+		if (gestureType <= FrameSnapshot.GESTURE_INVALID || gestureType >= enabled.length)
+			throw new IllegalArgumentException("Unknown gesture type: " + gestureType);
+		enabled[gestureType] = true;
+	}
+
+	/**
+	 * @param swipeMinLength
+	 *            How far a pointable must move, in mm, before a swipe starts.
+	 */
+	public void setSwipeMinLength(float swipeMinLength) {
+		this.swipeMinLength = swipeMinLength;
+	}
+
+	/**
+	 * @param swipeMinVelocity
+	 *            How fast a pointable must move, in mm/s, to swipe.
+	 */
+	public void setSwipeMinVelocity(float swipeMinVelocity) {
+		this.swipeMinVelocity = swipeMinVelocity;
+	}
+
+	/**
+	 * @param circleMinRadius
+	 *            The smallest circle recognized, in mm.
+	 */
+	public void setCircleMinRadius(float circleMinRadius) {
+		this.circleMinRadius = circleMinRadius;
+	}
+
+	/**
+	 * @param circleMinArc
+	 *            How far round, in radians, a pointable must go before a circle starts.
+	 */
+	public void setCircleMinArc(float circleMinArc) {
+		this.circleMinArc = circleMinArc;
+	}
+
+	/**
+	 * @param tapMinVelocity
+	 *            How fast a pointable must move forward (screen tap) or down (key tap), in mm/s, to tap.
+	 */
+	public void setTapMinVelocity(float tapMinVelocity) {
+		this.tapMinVelocity = tapMinVelocity;
+	}
+
+	/**
+	 * @param tapMinDistance
+	 *            How far a pointable must move forward or down, in mm, to tap.
+	 */
+	public void setTapMinDistance(float tapMinDistance) {
+		this.tapMinDistance = tapMinDistance;
+	}
+
+	/**
+	 * @param tapHistorySeconds
+	 *            The longest a tap motion may take.
+	 */
+	public void setTapHistorySeconds(float tapHistorySeconds) {
+		this.tapHistorySeconds = tapHistorySeconds;
+	}
+
+	/**
+	 * Recognize gestures in a frame. Frames must be given in order; passing the same frame again returns the same result.
+	 *
+	 * @param frame
+	 * @return A copy of the frame with the recognized gestures in place of the device's. It is reused by the next call, so copy it if it is
+	 *         needed after that.
+	 */
+	public FrameSnapshot process(FrameSnapshot frame) {
+		if (frame.getId() == lastFrameId)
+			return output;
+		lastFrameId = frame.getId();
+		output.copyFrom(frame);
+		output.clearGestures();
+		long timestamp = frame.getTimestamp();
+
+		// Stop the gestures of pointables that are no longer in view.
+		for (int s = 0; s < MAX_TRACKED; s++) {
+			if (tracked[s] && frame.findPointable(ids[s]) < 0) {
+				stopSwipe(s);
+				stopCircle(s);
+				tracked[s] = false;
+			}
+		}
+
+		for (int i = 0; i < frame.getPointableCount(); i++) {
+			int s = slot(frame.getPointableId(i));
+			if (s < 0)
+				continue;
+
+			if (!tracked[s]) {
+				start(s, frame, i);
+				continue;
+			}
+			float dt = (timestamp - timestamps[s]) / MICROS_PER_SECOND;
+			if (dt <= 0)
+				continue;
+
+			// Update the position and smoothed velocity.
+			vector[0] = frame.getTipX(i);
+			vector[1] = frame.getTipY(i);
+			vector[2] = frame.getTipZ(i);
+			for (int c = 0; c < 3; c++) {
+				velocities[s * 3 + c] += VELOCITY_SMOOTHING * ((vector[c] - positions[s * 3 + c]) / dt - velocities[s * 3 + c]);
+				positions[s * 3 + c] = vector[c];
+			}
+			directions[s * 3] = frame.getDirectionX(i);
+			directions[s * 3 + 1] = frame.getDirectionY(i);
+			directions[s * 3 + 2] = frame.getDirectionZ(i);
+			timestamps[s] = timestamp;
+
+			if (enabled[FrameSnapshot.GESTURE_SWIPE])
+				updateSwipe(s);
+			if (enabled[FrameSnapshot.GESTURE_CIRCLE])
+				updateCircle(s, dt);
+			if (enabled[FrameSnapshot.GESTURE_SCREEN_TAP])
+				updateTap(s, SCREEN_TAP);
+			if (enabled[FrameSnapshot.GESTURE_KEY_TAP])
+				updateTap(s, KEY_TAP);
+		}
+		return output;
+	}
+
+	private void start(int s, FrameSnapshot frame, int pointable) {
+		tracked[s] = true;
+		ids[s] = frame.getPointableId(pointable);
+		timestamps[s] = frame.getTimestamp();
+		positions[s * 3] = frame.getTipX(pointable);
+		positions[s * 3 + 1] = frame.getTipY(pointable);
+		positions[s * 3 + 2] = frame.getTipZ(pointable);
+		directions[s * 3] = frame.getDirectionX(pointable);
+		directions[s * 3 + 1] = frame.getDirectionY(pointable);
+		directions[s * 3 + 2] = frame.getDirectionZ(pointable);
+		for (int c = 0; c < 3; c++) {
+			velocities[s * 3 + c] = 0;
+			circleCenters[s * 3 + c] = positions[s * 3 + c];
+			circleAxes[s * 3 + c] = 0;
+		}
+		swipeMoving[s] = false;
+		swipeIds[s] = 0;
+		circleHasRadius[s] = false;
+		circleSwept[s] = 0;
+		circleIds[s] = 0;
+		tapMoving[s * 2] = false;
+		tapMoving[s * 2 + 1] = false;
+	}
+
+	// Swipes:
+
+	private void updateSwipe(int s) {
+		float speed = length(velocities, s * 3);
+		if (!swipeMoving[s]) {
+			if (speed >= swipeMinVelocity) {
+				swipeMoving[s] = true;
+				System.arraycopy(positions, s * 3, swipeStarts, s * 3, 3);
+			}
+			return;
+		}
+
+		if (speed < swipeMinVelocity * SWIPE_STOP_RATIO) {
+			stopSwipe(s);
+			return;
+		}
+		if (swipeIds[s] != 0) {
+			addSwipe(s, FrameSnapshot.STATE_UPDATE);
+		} else if (distance(positions, s * 3, swipeStarts, s * 3) >= swipeMinLength) {
+			swipeIds[s] = nextGestureId++;
+			addSwipe(s, FrameSnapshot.STATE_START);
+		}
+	}
+
+	private void stopSwipe(int s) {
+		if (swipeIds[s] != 0)
+			addSwipe(s, FrameSnapshot.STATE_STOP);
+		swipeMoving[s] = false;
+		swipeIds[s] = 0;
+	}
+
+	private void addSwipe(int s, int state) {
+		// The direction is that of the whole swipe so far.
+		for (int c = 0; c < 3; c++)
+			vector[c] = positions[s * 3 + c] - swipeStarts[s * 3 + c];
+		normalize(vector);
+		output.addGesture(swipeIds[s], FrameSnapshot.GESTURE_SWIPE, state, ids[s], 0, false, positions[s * 3], positions[s * 3 + 1],
+				positions[s * 3 + 2], vector[0], vector[1], vector[2]);
+	}
+
+	// Circles:
+
+	private void updateCircle(int s, float dt) {
+		// Follow the center of the circle with a moving average of the tip position, and measure the angle turned around it since the last
+		// frame. The axis of rotation is a moving average of the cross products of successive radius vectors.
+		float k = dt / (CIRCLE_CENTER_SECONDS + dt);
+		for (int c = 0; c < 3; c++)
+			circleCenters[s * 3 + c] += k * (positions[s * 3 + c] - circleCenters[s * 3 + c]);
+		float rx = positions[s * 3] - circleCenters[s * 3];
+		float ry = positions[s * 3 + 1] - circleCenters[s * 3 + 1];
+		float rz = positions[s * 3 + 2] - circleCenters[s * 3 + 2];
+		boolean hadRadius = circleHasRadius[s];
+		float px = circleRadii[s * 3];
+		float py = circleRadii[s * 3 + 1];
+		float pz = circleRadii[s * 3 + 2];
+		circleRadii[s * 3] = rx;
+		circleRadii[s * 3 + 1] = ry;
+		circleRadii[s * 3 + 2] = rz;
+		circleHasRadius[s] = true;
+
+		if (!hadRadius || rx * rx + ry * ry + rz * rz < circleMinRadius * circleMinRadius) {
+			stopCircle(s);
+			return;
+		}
+
+		float cx = py * rz - pz * ry;
+		float cy = pz * rx - px * rz;
+		float cz = px * ry - py * rx;
+		circleAxes[s * 3] += k * (cx - circleAxes[s * 3]);
+		circleAxes[s * 3 + 1] += k * (cy - circleAxes[s * 3 + 1]);
+		circleAxes[s * 3 + 2] += k * (cz - circleAxes[s * 3 + 2]);
+		System.arraycopy(circleAxes, s * 3, vector, 0, 3);
+		if (!normalize(vector))
+			return;
+
+		float angle = (float) Math.atan2(cx * vector[0] + cy * vector[1] + cz * vector[2], px * rx + py * ry + pz * rz);
+		if (Math.abs(angle) / dt < CIRCLE_MIN_ANGULAR_VELOCITY || angle * circleSwept[s] < 0) {
+			// Too slow, or turning back.
+			stopCircle(s);
+			circleSwept[s] = angle;
+			return;
+		}
+		circleSwept[s] += angle;
+
+		if (circleIds[s] != 0) {
+			addCircle(s, FrameSnapshot.STATE_UPDATE);
+		} else if (Math.abs(circleSwept[s]) >= circleMinArc) {
+			circleIds[s] = nextGestureId++;
+			addCircle(s, FrameSnapshot.STATE_START);
+		}
+	}
+
+	private void stopCircle(int s) {
+		if (circleIds[s] != 0)
+			addCircle(s, FrameSnapshot.STATE_STOP);
+		circleSwept[s] = 0;
+		circleIds[s] = 0;
+	}
+
+	private void addCircle(int s, int state) {
+		// The normal follows the right hand rule for the direction of turning. Like the device, call the circle clockwise if the normal points
+		// the same way as the pointable.
+		System.arraycopy(circleAxes, s * 3, vector, 0, 3);
+		normalize(vector);
+		if (circleSwept[s] < 0) {
+			vector[0] = -vector[0];
+			vector[1] = -vector[1];
+			vector[2] = -vector[2];
+		}
+		boolean clockwise = vector[0] * directions[s * 3] + vector[1] * directions[s * 3 + 1] + vector[2] * directions[s * 3 + 2] > 0;
+		float progress = Math.abs(circleSwept[s]) / (2 * (float) Math.PI);
+		output.addGesture(circleIds[s], FrameSnapshot.GESTURE_CIRCLE, state, ids[s], progress, clockwise, circleCenters[s * 3],
+				circleCenters[s * 3 + 1], circleCenters[s * 3 + 2], vector[0], vector[1], vector[2]);
+	}
+
+	// Taps:
+
+	private void updateTap(int s, int tap) {
+		int t = s * 2 + tap;
+		int axis = TAP_AXES[tap];
+		// Forward and down are both negative.
+		float velocity = -velocities[s * 3 + axis];
+		long timestamp = timestamps[s];
+
+		if (!tapMoving[t]) {
+			if (velocity >= tapMinVelocity) {
+				tapMoving[t] = true;
+				tapStartTimes[t] = timestamp;
+				System.arraycopy(positions, s * 3, tapStarts, t * 3, 3);
+			}
+			return;
+		}
+
+		float seconds = (timestamp - tapStartTimes[t]) / MICROS_PER_SECOND;
+		if (seconds > tapHistorySeconds) {
+			// Too slow to be a tap.
+			tapMoving[t] = false;
+			return;
+		}
+		if (velocity > 0)
+			return;
+
+		// The motion has stopped or turned back: it is a tap if it went far enough, mostly along the tap axis.
+		tapMoving[t] = false;
+		float distance = tapStarts[t * 3 + axis] - positions[s * 3 + axis];
+		float total = distance(positions, s * 3, tapStarts, t * 3);
+		if (distance >= tapMinDistance && distance * distance * 2 >= total * total) {
+			vector[0] = 0;
+			vector[1] = 0;
+			vector[2] = 0;
+			vector[axis] = -1;
+			output.addGesture(nextGestureId++, TAP_TYPES[tap], FrameSnapshot.STATE_STOP, ids[s], 1, false, positions[s * 3], positions[s * 3 + 1],
+					positions[s * 3 + 2], vector[0], vector[1], vector[2]);
+		}
+	}
+
+	// Helpers:
+
+	/**
+	 * @return The slot tracking the pointable, or a free slot for it, or -1 if all slots are in use.
+	 */
+	private int slot(int pointableId) {
+		int free = -1;
+		for (int s = 0; s < MAX_TRACKED; s++) {
+			if (tracked[s] && ids[s] == pointableId)
+				return s;
+			if (!tracked[s] && free < 0)
+				free = s;
+		}
+		return free;
+	}
+
+	private static float length(float[] values, int offset) {
+		return (float) Math.sqrt(values[offset] * values[offset] + values[offset + 1] * values[offset + 1] + values[offset + 2] * values[offset + 2]);
+	}
+
+	private static float distance(float[] a, int aOffset, float[] b, int bOffset) {
+		float dx = a[aOffset] - b[bOffset];
+		float dy = a[aOffset + 1] - b[bOffset + 1];
+		float dz = a[aOffset + 2] - b[bOffset + 2];
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * @return False if the vector has no length (and was left as it is).
+	 */
+	private static boolean normalize(float[] v) {
+		float length = length(v, 0);
+		if (length == 0)
+			return false;
+		v[0] /= length;
+		v[1] /= length;
+		v[2] /= length;
+		return true;
+	}
+
+	/**
+	 * Play back a recording through the engine and print the gestures it recognizes, to tune the thresholds without a device. Usage:
+	 *
+	 * java util.GestureEngine recording [name=value ...]
+	 *
+	 * where name is one of SwipeMinLength, SwipeMinVelocity, CircleMinRadius, CircleMinArc, TapMinVelocity, TapMinDistance or
+	 * TapHistorySeconds. All gesture types are enabled.
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java util.GestureEngine recording [name=value ...]");
+			System.exit(1);
+		}
+
+		GestureEngine engine = new GestureEngine();
+		for (int type = FrameSnapshot.GESTURE_SWIPE; type <= FrameSnapshot.GESTURE_KEY_TAP; type++)
+			engine.enableGesture(type);
+		for (int i = 1; i < args.length; i++) {
+			String[] setting = args[i].split("=", 2);
+			if (setting.length != 2)
+				throw new IllegalArgumentException("Settings must be name=value. Given: " + args[i]);
+			float value = Float.parseFloat(setting[1]);
+			switch (setting[0]) {
+			case "SwipeMinLength":
+				engine.setSwipeMinLength(value);
+				break;
+			case "SwipeMinVelocity":
+				engine.setSwipeMinVelocity(value);
+				break;
+			case "CircleMinRadius":
+				engine.setCircleMinRadius(value);
+				break;
+			case "CircleMinArc":
+				engine.setCircleMinArc(value);
+				break;
+			case "TapMinVelocity":
+				engine.setTapMinVelocity(value);
+				break;
+			case "TapMinDistance":
+				engine.setTapMinDistance(value);
+				break;
+			case "TapHistorySeconds":
+				engine.setTapHistorySeconds(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown setting: " + setting[0]);
+			}
+		}
+
+		String[] names = new String[] { "invalid", "swipe", "circle", "screen tap", "key tap" };
+		int[] counts = new int[names.length];
+		FrameRecording recording = new FrameRecording(new File(args[0]));
+		FrameSnapshot frame = new FrameSnapshot();
+		for (int i = 0; i < recording.getFrameCount(); i++) {
+			recording.read(i, frame);
+			FrameSnapshot result = engine.process(frame);
+			for (int g = 0; g < result.getGestureCount(); g++) {
+				if (result.getGestureState(g) != FrameSnapshot.STATE_STOP)
+					continue;
+				// Report each gesture once, when it ends.
+				int type = result.getGestureType(g);
+				counts[type]++;
+				System.out.println(String.format("%.3f s: %s by pointable %d%s", (frame.getTimestamp() - recording.getTimestamp(0)) / MICROS_PER_SECOND,
+						names[type], result.getGesturePointableId(g), type == FrameSnapshot.GESTURE_CIRCLE ? String.format(" (%.2f turns, %s)",
+								result.getGestureProgress(g), result.isGestureClockwise(g) ? "clockwise" : "counterclockwise") : ""));
+			}
+		}
+		for (int type = FrameSnapshot.GESTURE_SWIPE; type < names.length; type++)
+			System.out.println(names[type] + ": " + counts[type]);
+	}
+}
@@ -0,0 +1,199 @@
+package util;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Logger;
+
+import processing.core.PApplet;
+import processing.core.PGraphicsJava2D;
+
+/**
+ * Runs a sketch without a window, to measure how fast it renders on a machine without a display. The sketch draws into an offscreen
+ * PGraphicsJava2D, as fast as it can or at a fixed frame rate, and the runner logs the frame rate and how long each phase of a frame took.
+ *
+ * Usage: java -Djava.awt.headless=true --add-opens java.desktop/java.awt=ALL-UNNAMED util.HeadlessRunner SketchClass [frames] [fps]
+ *
+ * The --add-opens option is only needed on Java 9 and later. fps 0 (the default) runs unthrottled. Unless leap.replay is set, the sketch gets
+ * its frames from a SyntheticFrameSource; a replay is played one recorded frame per draw unless leap.replay.realtime is set.
+ *
+ * Only sketches that draw with the default JAVA2D renderer can run: P2D and P3D need OpenGL, and so a display.
+ */
+public class HeadlessRunner {
+	public static final int DEFAULT_FRAMES = 600;
+
+	// Frames left out of the timings, while the JIT and the caches warm up.
+	private static final int WARMUP_FRAMES = 30;
+
+	private final static Logger LOGGER = Logger.getLogger("HeadlessRunnerLogger");
+
+	/**
+	 * Records when each phase of a frame ends. PApplet calls pre() before draw(), draw() after it and post() after the frame is finished.
+	 * Public so that PApplet can call it.
+	 */
+	public static class PhaseClock {
+		private long preNanos;
+		private long drawNanos;
+		private long postNanos;
+
+		public void pre() {
+			preNanos = System.nanoTime();
+		}
+
+		public void draw() {
+			drawNanos = System.nanoTime();
+		}
+
+		public void post() {
+			postNanos = System.nanoTime();
+		}
+	}
+
+	// Make ctor private so you can only use this class statically.
+	private HeadlessRunner() {
+
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: util.HeadlessRunner SketchClass [frames] [fps]");
+			System.exit(2);
+		}
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_FRAMES;
+		float fps = args.length > 2 ? Float.parseFloat(args[2]) : 0;
+
+		LOGGER.setLevel(java.util.logging.Level.INFO);
+		LOGGER.addHandler(new ConsoleHandler());
+
+		run(args[0], frames, fps);
+		// Audio and video libraries leave threads running.
+		System.exit(0);
+	}
+
+	/**
+	 * Run a sketch for a number of frames and log the timings.
+	 *
+	 * @param sketchClass
+	 *            The class name of the sketch.
+	 * @param frames
+	 *            The number of draw() calls after setup().
+	 * @param fps
+	 *            The frame rate to hold, or 0 to draw as fast as possible.
+	 * @throws Exception
+	 *             If the sketch cannot be created or set up.
+	 */
+	public static void run(String sketchClass, int frames, float fps) throws Exception {
+		if (frames <= WARMUP_FRAMES)
+			throw new IllegalArgumentException("Run more than " + WARMUP_FRAMES + " frames. Given: " + frames);
+		System.setProperty("java.awt.headless", "true");
+		if (System.getProperty(LeapMotionUtil.REPLAY_PROPERTY) == null && System.getProperty(LeapMotionUtil.SYNTHETIC_PROPERTY) == null)
+			System.setProperty(LeapMotionUtil.SYNTHETIC_PROPERTY, "true");
+		if (System.getProperty(LeapMotionUtil.REPLAY_REALTIME_PROPERTY) == null)
+			System.setProperty(LeapMotionUtil.REPLAY_REALTIME_PROPERTY, "false");
+
+		PApplet sketch = createSketch(sketchClass);
+		sketch.sketchPath = System.getProperty("user.dir");
+		PGraphicsJava2D g = new PGraphicsJava2D();
+		g.setParent(sketch);
+		g.setPrimary(false);
+		// setup() sets the real size.
+		g.setSize(100, 100);
+		sketch.g = g;
+		sketch.loop();
+
+		PhaseClock clock = new PhaseClock();
+		sketch.registerMethod("pre", clock);
+		sketch.registerMethod("draw", clock);
+		sketch.registerMethod("post", clock);
+
+		long start = System.nanoTime();
+		sketch.handleDraw();
+		long setupNanos = System.nanoTime() - start;
+		if (sketch.frameCount == 0)
+			throw new IllegalStateException("setup() did not finish. The sketch probably asked for an OpenGL renderer, which needs a display.");
+		LOGGER.info(String.format("%s: setup() took %.1f ms, size %dx%d.", sketchClass, setupNanos / 1000000f, sketch.width, sketch.height));
+
+		int measured = frames - WARMUP_FRAMES;
+		long[] beginNanos = new long[measured];
+		long[] drawNanos = new long[measured];
+		long[] endNanos = new long[measured];
+		long[] frameNanos = new long[measured];
+		long periodNanos = fps > 0 ? (long) (1000000000L / fps) : 0;
+		long next = System.nanoTime();
+		long measureStart = 0;
+		for (int f = 0; f < frames; f++) {
+			if (f == WARMUP_FRAMES)
+				measureStart = System.nanoTime();
+			long frameStart = System.nanoTime();
+			sketch.handleDraw();
+			long frameEnd = System.nanoTime();
+			if (f >= WARMUP_FRAMES) {
+				int m = f - WARMUP_FRAMES;
+				beginNanos[m] = clock.preNanos - frameStart;
+				drawNanos[m] = clock.drawNanos - clock.preNanos;
+				endNanos[m] = clock.postNanos - clock.drawNanos;
+				frameNanos[m] = frameEnd - frameStart;
+			}
+			if (periodNanos > 0) {
+				next += periodNanos;
+				long sleepNanos = next - System.nanoTime();
+				if (sleepNanos > 0)
+					Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+			}
+		}
+		long wallNanos = System.nanoTime() - measureStart;
+
+		LOGGER.info(String.format("%s: %d frames in %.2f s, %.1f fps%s.", sketchClass, measured, wallNanos / 1e9, measured * 1e9 / wallNanos,
+				fps > 0 ? " (paced at " + fps + " fps)" : " (unthrottled)"));
+		logPhase("beginDraw", beginNanos);
+		logPhase("draw()", drawNanos);
+		logPhase("endDraw", endNanos);
+		logPhase("frame", frameNanos);
+		sketch.stop();
+	}
+
+	/**
+	 * Create the sketch. java.applet.Applet refuses to be created when headless, so tell it there is a display just while the constructor
+	 * runs. Nothing in the constructor opens the display.
+	 */
+	private static PApplet createSketch(String sketchClass) throws Exception {
+		// Load the headless toolkit first, so nothing loads the display toolkit while the flag is off.
+		GraphicsEnvironment.isHeadless();
+		Toolkit.getDefaultToolkit();
+		Class<?> type = Class.forName(sketchClass);
+		if (!PApplet.class.isAssignableFrom(type))
+			throw new IllegalArgumentException("Not a PApplet. Given: " + sketchClass);
+
+		Field headless = GraphicsEnvironment.class.getDeclaredField("headless");
+		try {
+			headless.setAccessible(true);
+		} catch (RuntimeException ex) {
+			throw new IllegalStateException("Cannot create a sketch without a display. On Java 9 and later, run with "
+					+ "--add-opens java.desktop/java.awt=ALL-UNNAMED.", ex);
+		}
+		headless.set(null, Boolean.FALSE);
+		try {
+			return (PApplet) type.getDeclaredConstructor().newInstance();
+		} catch (InvocationTargetException ex) {
+			// Report what the sketch's constructor threw.
+			if (ex.getCause() instanceof Exception)
+				throw (Exception) ex.getCause();
+			throw ex;
+		} finally {
+			headless.set(null, Boolean.TRUE);
+		}
+	}
+
+	private static void logPhase(String phase, long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		long sum = 0;
+		for (int i = 0; i < sorted.length; i++)
+			sum += sorted[i];
+		LOGGER.info(String.format("  %-10s mean %7.3f ms, median %7.3f ms, 95th %7.3f ms, max %7.3f ms", phase, sum / 1e6 / sorted.length,
+				sorted[sorted.length / 2] / 1e6, sorted[sorted.length * 95 / 100] / 1e6, sorted[sorted.length - 1] / 1e6));
+	}
+}
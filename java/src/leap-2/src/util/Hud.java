@@ -0,0 +1,228 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+
+/**
+ * A heads-up display of text fields over part of the window. The sketch publishes the value of each field every frame, and a field's text is
+ * only built again when its value has changed. On OpenGL renderers the fields are rendered into an offscreen layer only when something has
+ * changed, and draw() puts the layer on screen with a single image() call; on JAVA2D, where putting the layer on screen costs more than
+ * drawing a few strings, draw() draws the built texts directly.
+ *
+ * Numbers are compared after rounding to the decimals shown, and texts by equals(), so publishing the same value again costs no string
+ * building. Publish texts that are constants (or otherwise the same String objects) where possible.
+ */
+public class Hud {
+	public static final int DEFAULT_TEXT_SIZE = 12;
+
+	private static class Field {
+		private final String prefix;
+		private final String suffix;
+		private final int decimals;
+		private final double scale;
+		private final float x;
+		private final float y;
+		private final int align;
+		private String text = null;
+		private boolean hasValue = false;
+		private long roundedValue;
+		// The prefix, value or text and suffix, as drawn.
+		private String shown;
+
+		private Field(String prefix, String suffix, int decimals, float x, float y, int align) {
+			this.prefix = prefix;
+			this.suffix = suffix;
+			this.decimals = decimals;
+			this.scale = Math.pow(10, decimals);
+			this.x = x;
+			this.y = y;
+			this.align = align;
+			this.shown = prefix;
+		}
+	}
+
+	private final PApplet pApplet;
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+	// Only made on OpenGL renderers.
+	private PGraphics layer = null;
+	private final List<Field> fields = new ArrayList<Field>();
+	private int textSize = DEFAULT_TEXT_SIZE;
+	private int[] rgb = new int[] { 255, 255, 255 };
+	private boolean dirty = true;
+	private int renderCount = 0;
+
+	/**
+	 * Call from setup(), after size().
+	 *
+	 * @param pApplet
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 *            The part of the window the fields are drawn in. On OpenGL renderers text outside it is cut off.
+	 * @throws IllegalArgumentException
+	 */
+	public Hud(PApplet pApplet, int x, int y, int width, int height) throws IllegalArgumentException {
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException("The HUD needs a width and height of at least 1. Given: " + width + "x" + height);
+		this.pApplet = pApplet;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	public void setTextSize(int textSize) {
+		this.textSize = textSize;
+		dirty = true;
+	}
+
+	public void setRgb(int[] rgb) {
+		this.rgb = rgb;
+		dirty = true;
+	}
+
+	/**
+	 * Add a field, shown as its prefix followed by its value or text and its suffix. Until one is published, only the prefix is shown.
+	 *
+	 * @param prefix
+	 * @param suffix
+	 * @param decimals
+	 *            The decimals shown for numbers.
+	 * @param x
+	 * @param y
+	 *            The baseline of the text, in window coordinates.
+	 * @param align
+	 *            PConstants.LEFT, CENTER or RIGHT.
+	 * @return The id of the field.
+	 * @throws IllegalArgumentException
+	 */
+	public int addField(String prefix, String suffix, int decimals, float x, float y, int align) throws IllegalArgumentException {
+		if (decimals < 0)
+			throw new IllegalArgumentException("Decimals must be at least 0. Given: " + decimals);
+		Field field = new Field(prefix, suffix, decimals, x, y, align);
+		fields.add(field);
+		dirty = true;
+		return fields.size() - 1;
+	}
+
+	public int addField(String prefix, float x, float y) {
+		return addField(prefix, "", 0, x, y, PConstants.LEFT);
+	}
+
+	public void setValue(int field, float value) {
+		Field f = fields.get(field);
+		long rounded = Math.round(value * f.scale);
+		if (f.hasValue && f.text == null && f.roundedValue == rounded)
+			return;
+		f.hasValue = true;
+		f.text = null;
+		f.roundedValue = rounded;
+		f.shown = f.prefix + String.format("%." + f.decimals + "f", value) + f.suffix;
+		dirty = true;
+	}
+
+	/**
+	 * @param field
+	 * @param text
+	 * @throws IllegalArgumentException
+	 *             If the text is null. Use clear() to show only the prefix.
+	 */
+	public void setText(int field, String text) throws IllegalArgumentException {
+		if (text == null)
+			throw new IllegalArgumentException("The text must not be null. Use clear() to show only the prefix.");
+		Field f = fields.get(field);
+		if (f.hasValue && text.equals(f.text))
+			return;
+		f.hasValue = true;
+		f.text = text;
+		f.shown = f.prefix + text + f.suffix;
+		dirty = true;
+	}
+
+	/**
+	 * Show only the prefix of a field.
+	 *
+	 * @param field
+	 */
+	public void clear(int field) {
+		Field f = fields.get(field);
+		if (!f.hasValue)
+			return;
+		f.hasValue = false;
+		f.text = null;
+		f.shown = f.prefix;
+		dirty = true;
+	}
+
+	/**
+	 * Draw the fields. On OpenGL renderers they are rendered into the layer first if anything has changed.
+	 */
+	public void draw() {
+		PGraphics g = pApplet.g;
+		if (!g.isGL()) {
+			// Put back only what is changed; pushStyle() and popStyle() would cost more than the text.
+			boolean fill = g.fill;
+			int fillColor = g.fillColor;
+			int textAlign = g.textAlign;
+			int textAlignY = g.textAlignY;
+			float oldTextSize = g.textSize;
+			if (oldTextSize != textSize)
+				g.textSize(textSize);
+			g.fill(rgb[0], rgb[1], rgb[2]);
+			for (int i = 0; i < fields.size(); i++) {
+				Field f = fields.get(i);
+				g.textAlign(f.align);
+				g.text(f.shown, f.x, f.y);
+			}
+			if (oldTextSize != textSize)
+				g.textSize(oldTextSize);
+			g.textAlign(textAlign, textAlignY);
+			if (fill)
+				g.fill(fillColor);
+			else
+				g.noFill();
+			return;
+		}
+		if (layer == null)
+			layer = pApplet.createGraphics(width, height);
+		if (dirty)
+			render();
+		pApplet.image(layer, x, y);
+	}
+
+	/**
+	 * @return The number of times the fields have been rendered into the layer.
+	 */
+	public int getRenderCount() {
+		return renderCount;
+	}
+
+	private void render() {
+		layer.beginDraw();
+		layer.clear();
+		applyStyle(layer);
+		for (int i = 0; i < fields.size(); i++) {
+			Field f = fields.get(i);
+			layer.textAlign(f.align);
+			layer.text(f.shown, f.x - x, f.y - y);
+		}
+		layer.endDraw();
+		dirty = false;
+		renderCount++;
+	}
+
+	private void applyStyle(PGraphics g) {
+		if (pApplet.g.textFont != null)
+			g.textFont(pApplet.g.textFont);
+		g.textSize(textSize);
+		g.fill(rgb[0], rgb[1], rgb[2]);
+	}
+}
@@ -0,0 +1,212 @@
+package util;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * Decodes the images of a list of files as they are needed, on a pool of worker threads, and keeps the most recently used ones up to a
+ * number of bytes. get() never waits for a decode: it returns null and the image shows up in a later frame. prefetch() decodes the images
+ * around the one being shown, so swiping to them usually finds them ready.
+ *
+ * Images are decoded with PApplet.loadImage(), as PApplet.requestImage() does on its own threads, and wrapped in a MipImage.
+ */
+public class ImageCache {
+	public static final int DEFAULT_THREADS = 2;
+
+	private final PApplet pApplet;
+	private final File[] files;
+	private final long maxBytes;
+	private final ExecutorService workers;
+	// Guarded by this. An access-ordered LinkedHashMap keeps the least recently used image first.
+	private final LinkedHashMap<Integer, MipImage> images = new LinkedHashMap<Integer, MipImage>(16, 0.75f, true);
+	private final Set<Integer> pending = new HashSet<Integer>();
+	private final Set<Integer> failed = new HashSet<Integer>();
+	// The image last asked for, and how far around it prefetch() last asked for. Decodes queued for images since swiped past are skipped.
+	private int current = 0;
+	private int prefetchDistance = 0;
+	private long bytes = 0;
+	private int hitCount = 0;
+	private int missCount = 0;
+
+	public ImageCache(PApplet pApplet, File[] files, long maxBytes) throws IllegalArgumentException {
+		this(pApplet, files, maxBytes, DEFAULT_THREADS);
+	}
+
+	/**
+	 * @param pApplet
+	 * @param files
+	 *            The images, in the order they are indexed.
+	 * @param maxBytes
+	 *            The most decoded pixels kept, counting 4 bytes a pixel and a third more for the smaller copies. The image last asked for and
+	 *            the one decoded last are kept even if they do not fit.
+	 * @param threads
+	 *            The number of images decoded at once.
+	 * @throws IllegalArgumentException
+	 */
+	public ImageCache(PApplet pApplet, File[] files, long maxBytes, int threads) throws IllegalArgumentException {
+		if (maxBytes < 1)
+			throw new IllegalArgumentException("Max bytes must be at least 1. Given: " + maxBytes);
+		if (threads < 1)
+			throw new IllegalArgumentException("Threads must be at least 1. Given: " + threads);
+		this.pApplet = pApplet;
+		this.files = files.clone();
+		this.maxBytes = maxBytes;
+		workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ImageCache worker");
+				// Never keep a sketch from exiting, and leave the CPU to draw().
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	public int size() {
+		return files.length;
+	}
+
+	public File getFile(int index) {
+		return files[index];
+	}
+
+	/**
+	 * Get a decoded image, starting to decode it if it is not cached.
+	 *
+	 * @param index
+	 * @return The image, or null until it has been decoded.
+	 */
+	public synchronized MipImage get(int index) {
+		current = index;
+		MipImage image = images.get(index);
+		if (image != null) {
+			hitCount++;
+			return image;
+		}
+		missCount++;
+		load(index);
+		return null;
+	}
+
+	/**
+	 * Start decoding the images up to a distance before and after an index, nearest first, wrapping around the ends like the gallery does.
+	 *
+	 * @param index
+	 * @param distance
+	 */
+	public synchronized void prefetch(int index, int distance) {
+		current = index;
+		prefetchDistance = distance;
+		for (int d = 1; d <= distance && d < files.length; d++) {
+			load(wrap(index + d));
+			load(wrap(index - d));
+		}
+	}
+
+	/**
+	 * @param index
+	 * @return Whether the image could not be decoded. It is not tried again.
+	 */
+	public synchronized boolean isFailed(int index) {
+		return failed.contains(index);
+	}
+
+	/**
+	 * @return The bytes held by the cached images.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized int getCachedCount() {
+		return images.size();
+	}
+
+	public synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Stop the workers, for when a sketch exits. Decodes still running are dropped.
+	 */
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Queue a decode if the image is not cached, being decoded or failed. Call holding the lock.
+	 */
+	private void load(final int index) {
+		if (images.containsKey(index) || pending.contains(index) || failed.contains(index) || workers.isShutdown())
+			return;
+		pending.add(index);
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!isWanted(index))
+					return;
+				PImage image = null;
+				try {
+					image = pApplet.loadImage(files[index].getAbsolutePath());
+				} catch (RuntimeException ex) {
+					// Treated as a failed decode below.
+				}
+				// The image is only seen by this thread until put() publishes it under the lock.
+				put(index, image == null || image.width <= 0 ? null : new MipImage(image));
+			}
+		});
+	}
+
+	private synchronized void put(int index, MipImage image) {
+		pending.remove(index);
+		if (image == null) {
+			failed.add(index);
+			return;
+		}
+		images.put(index, image);
+		bytes += getBytes(image);
+		// Drop the least recently used images, but not the one being shown or the one just decoded.
+		Iterator<Map.Entry<Integer, MipImage>> eldest = images.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			Map.Entry<Integer, MipImage> entry = eldest.next();
+			if (entry.getKey() == current || entry.getKey() == index)
+				continue;
+			bytes -= getBytes(entry.getValue());
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * @return Whether an image is still the one being shown or within the prefetch distance of it. If not, its decode is dropped.
+	 */
+	private synchronized boolean isWanted(int index) {
+		int distance = Math.abs(index - current);
+		if (Math.min(distance, files.length - distance) <= prefetchDistance)
+			return true;
+		pending.remove(index);
+		return false;
+	}
+
+	private int wrap(int index) {
+		return ((index % files.length) + files.length) % files.length;
+	}
+
+	private static long getBytes(MipImage image) {
+		return (long) image.getWidth() * image.getHeight() * 4 * 4 / 3;
+	}
+}
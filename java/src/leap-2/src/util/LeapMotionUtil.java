@@ -1,14 +1,22 @@
 package util;
 
-import processing.core.PApplet;
+import java.io.File;
 
-import com.leapmotion.leap.Controller;
-import com.leapmotion.leap.InteractionBox;
-import com.leapmotion.leap.Vector;
+import processing.core.PApplet;
+import processing.core.PVector;
 
 public class LeapMotionUtil {
 	public static final int LEFT_HAND = 1;
 	public static final int RIGHT_HAND = 2;
+	// Map the leftmost hand into the left half of the window and any other hand into the right half.
+	public static final int BOTH_HANDS = 3;
+
+	// System properties used to pick the frame source.
+	public static final String REPLAY_PROPERTY = "leap.replay";
+	public static final String REPLAY_REALTIME_PROPERTY = "leap.replay.realtime";
+	public static final String REPLAY_LOOP_PROPERTY = "leap.replay.loop";
+	public static final String RECORD_PROPERTY = "leap.record";
+	public static final String SYNTHETIC_PROPERTY = "leap.synthetic";
 
 	// Make ctor private so you can only use this class statically.
 	private LeapMotionUtil() {
@@ -16,30 +24,70 @@ public class LeapMotionUtil {
 	}
 
 	/**
-	 * Convert the Leap Position position Vector to a Vector in the Processing window coordinate system.
-	 * 
+	 * Open the frame source for a sketch. If the leap.synthetic system property is true, made-up frames are used (see SyntheticFrameSource). If
+	 * leap.replay is set, the frame recording at that path is played back (leap.replay.realtime=false plays it as fast as possible,
+	 * leap.replay.loop=true loops it). Otherwise the Leap Motion device is used, and if leap.record is set the session is recorded to that path.
+	 *
+	 * @return
+	 * @throws Exception
+	 */
+	public static FrameSource openFrameSource() throws Exception {
+		if (Boolean.parseBoolean(System.getProperty(SYNTHETIC_PROPERTY, "false")))
+			return new SyntheticFrameSource();
+		String replayPath = System.getProperty(REPLAY_PROPERTY);
+		if (replayPath != null) {
+			boolean realTime = Boolean.parseBoolean(System.getProperty(REPLAY_REALTIME_PROPERTY, "true"));
+			boolean loop = Boolean.parseBoolean(System.getProperty(REPLAY_LOOP_PROPERTY, "false"));
+			return new ReplayFrameSource(new File(replayPath), realTime, loop);
+		}
+
+		LiveFrameSource frameSource = new LiveFrameSource();
+		String recordPath = System.getProperty(RECORD_PROPERTY);
+		if (recordPath != null)
+			frameSource.record(new File(recordPath));
+		return frameSource;
+	}
+
+	/**
+	 * Normalize a position in Leap Motion coordinates to the range [0, 1] on each axis, using the frame's interaction box.
+	 *
+	 * @param frame
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public static PVector normalizePoint(FrameSnapshot frame, float x, float y, float z) {
+		return new PVector(normalize(x, frame.getBoxCenterX(), frame.getBoxWidth()), normalize(y, frame.getBoxCenterY(), frame.getBoxHeight()),
+				normalize(z, frame.getBoxCenterZ(), frame.getBoxDepth()));
+	}
+
+	/**
+	 * Convert the tip position of a pointable to a Vector in the Processing window coordinate system.
+	 *
 	 * @param pApplet
-	 * @param lmController
-	 * @param leapVector
+	 * @param frame
+	 * @param pointable
+	 *            The index of the pointable in the frame.
 	 * @return
 	 */
-	public static Vector leapToProcessingVector(PApplet pApplet, Controller lmController, Vector leapVector) {
-		return leapToProcessingVectorHelper(pApplet, lmController, leapVector, 0, 1, 0, pApplet.width);
+	public static PVector leapToProcessingVector(PApplet pApplet, FrameSnapshot frame, int pointable) {
+		return leapToProcessingVectorHelper(pApplet, frame, pointable, 0, 1, 0, pApplet.width);
 	}
 
 	/**
-	 * Convert the Leap Position position Vector to a Vector in the Processing window coordinate system, splitting the space between the left and
+	 * Convert the tip position of a pointable to a Vector in the Processing window coordinate system, splitting the space between the left and
 	 * right hands.
-	 * 
+	 *
 	 * @param pApplet
-	 * @param lmController
-	 * @param leapVector
+	 * @param frame
+	 * @param pointable
+	 *            The index of the pointable in the frame.
 	 * @param hand
 	 * @return
 	 * @throws IllegalArgumentException
 	 */
-	public static Vector leapToProcessingVector(PApplet pApplet, Controller lmController, Vector leapVector, int hand)
-			throws IllegalArgumentException {
+	public static PVector leapToProcessingVector(PApplet pApplet, FrameSnapshot frame, int pointable, int hand) throws IllegalArgumentException {
 		if (hand != LEFT_HAND && hand != RIGHT_HAND)
 			throw new IllegalArgumentException("Hand must be either LeapMotionUtil.LEFT_HAND or LeapMotionUtil.RIGHT_HAND.");
 
@@ -63,22 +111,110 @@ public class LeapMotionUtil {
 			break;
 		}
 
-		return leapToProcessingVectorHelper(pApplet, lmController, leapVector, lxMin, lxMax, pxMin, pxMax);
+		return leapToProcessingVectorHelper(pApplet, frame, pointable, lxMin, lxMax, pxMin, pxMax);
+	}
+
+	/**
+	 * Convert the tip positions of all pointables in a frame to the Processing window coordinate system in one pass, without allocating. This is
+	 * the same mapping as leapToProcessingVector(), but much cheaper when several pointables are tracked.
+	 *
+	 * @param pApplet
+	 * @param frame
+	 * @param out
+	 *            Receives x, y, z for each pointable, in pointable index order. Must hold at least 3 * frame.getPointableCount() values.
+	 * @return The number of pointables converted.
+	 * @throws IllegalArgumentException
+	 */
+	public static int leapToProcessingCoordinates(PApplet pApplet, FrameSnapshot frame, float[] out) throws IllegalArgumentException {
+		return leapToProcessingCoordinatesHelper(pApplet, frame, 0, 1, out);
 	}
 
-	private static Vector leapToProcessingVectorHelper(PApplet pApplet, Controller lmController, Vector leapVector, float lxMin, float lxMax,
+	/**
+	 * Convert the tip positions of all pointables in a frame to the Processing window coordinate system in one pass, without allocating,
+	 * splitting the space between the left and right hands.
+	 *
+	 * @param pApplet
+	 * @param frame
+	 * @param hand
+	 *            LEFT_HAND or RIGHT_HAND to map every pointable into that half of the window, or BOTH_HANDS to map each pointable into the half
+	 *            for its own hand.
+	 * @param out
+	 *            Receives x, y, z for each pointable, in pointable index order. Must hold at least 3 * frame.getPointableCount() values.
+	 * @return The number of pointables converted.
+	 * @throws IllegalArgumentException
+	 */
+	public static int leapToProcessingCoordinates(PApplet pApplet, FrameSnapshot frame, int hand, float[] out) throws IllegalArgumentException {
+		switch (hand) {
+		case LEFT_HAND:
+			return leapToProcessingCoordinatesHelper(pApplet, frame, 0, 0.5f, out);
+		case RIGHT_HAND:
+			return leapToProcessingCoordinatesHelper(pApplet, frame, 0.5f, 1, out);
+		case BOTH_HANDS:
+			int count = leapToProcessingCoordinatesHelper(pApplet, frame, 0, 1, out);
+			// Clamp each pointable into the half of the window for its hand.
+			int leftHand = frame.leftmostHand();
+			float center = pApplet.width * 0.5f;
+			for (int i = 0; i < count; i++) {
+				if (frame.getPointableHand(i) == leftHand)
+					out[i * 3] = Math.min(out[i * 3], center);
+				else
+					out[i * 3] = Math.max(out[i * 3], center);
+			}
+			return count;
+		default:
+			throw new IllegalArgumentException("Hand must be LeapMotionUtil.LEFT_HAND, LeapMotionUtil.RIGHT_HAND or LeapMotionUtil.BOTH_HANDS.");
+		}
+	}
+
+	private static int leapToProcessingCoordinatesHelper(PApplet pApplet, FrameSnapshot frame, float lxMin, float lxMax, float[] out)
+			throws IllegalArgumentException {
+		int count = frame.getPointableCount();
+		if (out.length < count * 3)
+			throw new IllegalArgumentException("Output array must hold " + (count * 3) + " values. Given: " + out.length);
+
+		// Fold the interaction box into a scale and offset per axis, so the loop is only multiply-adds and clamps with no calls for the JIT to
+		// work around. Normalizing x to [lxMin, lxMax] and mapping that to the same part of the window is just a clamp and a scale.
+		float sx = 1 / frame.getBoxWidth();
+		float sy = 1 / frame.getBoxHeight();
+		float sz = 1 / frame.getBoxDepth();
+		float ox = 0.5f - frame.getBoxCenterX() * sx;
+		float oy = 0.5f - frame.getBoxCenterY() * sy;
+		float oz = 0.5f - frame.getBoxCenterZ() * sz;
+		float width = pApplet.width;
+		float height = pApplet.height;
+		float[] tips = frame.tipPositions();
+
+		for (int i = 0; i < count * 3; i += 3) {
+			float x = tips[i] * sx + ox;
+			float y = tips[i + 1] * sy + oy;
+			float z = tips[i + 2] * sz + oz;
+			out[i] = (x < lxMin ? lxMin : (x > lxMax ? lxMax : x)) * width;
+			// Y is flipped since the coordinate system is different.
+			out[i + 1] = (1 - (y < 0 ? 0 : (y > 1 ? 1 : y))) * height;
+			out[i + 2] = z < 0 ? 0 : (z > 1 ? 1 : z);
+		}
+		return count;
+	}
+
+	private static PVector leapToProcessingVectorHelper(PApplet pApplet, FrameSnapshot frame, int pointable, float lxMin, float lxMax,
 			float pxMin, float pxMax) {
 		// Normalize the coordinates.
-		InteractionBox iBox = lmController.frame().interactionBox();
-		Vector iBoxVector = iBox.normalizePoint(leapVector);
+		PVector iBoxVector = normalizePoint(frame, frame.getTipX(pointable), frame.getTipY(pointable), frame.getTipZ(pointable));
 
-		if (iBoxVector.getX() < lxMin)
-			iBoxVector.setX(lxMin);
-		else if ((iBoxVector.getX() > lxMax))
-			iBoxVector.setX(lxMax);
+		if (iBoxVector.x < lxMin)
+			iBoxVector.x = lxMin;
+		else if ((iBoxVector.x > lxMax))
+			iBoxVector.x = lxMax;
 
 		// Center points around the center of window, since the Leap origin is the center. Y is negative since coordinate system is different.
-		return new Vector(PApplet.map(iBoxVector.getX(), lxMin, lxMax, pxMin, pxMax), PApplet.map(iBoxVector.getY(), 0, 1, pApplet.height, 0),
-				iBoxVector.getZ());
+		return new PVector(PApplet.map(iBoxVector.x, lxMin, lxMax, pxMin, pxMax), PApplet.map(iBoxVector.y, 0, 1, pApplet.height, 0), iBoxVector.z);
+	}
+
+	/**
+	 * Same as InteractionBox.normalizePoint(), clamped to [0, 1].
+	 */
+	private static float normalize(float value, float center, float size) {
+		float normalized = (value - center) / size + 0.5f;
+		return normalized < 0 ? 0 : (normalized > 1 ? 1 : normalized);
 	}
 }
@@ -10,6 +10,9 @@ public class MinimUtil {
 
 	}
 
+	// The vertices of the last waveform drawn, reused from frame to frame. Only draw from the animation thread.
+	private static float[] waveformVertices = new float[0];
+
 	/**
 	 * Draw a waveform based on an AudioOutput object.
 	 * 
@@ -22,8 +25,88 @@ public class MinimUtil {
 	 * @param leftRightSpread
 	 * @param strokeRgb
 	 */
-	public static void drawWaveform(PApplet pApplet, Minim minim, AudioOutput audioOutput, int waveformMultiplier, float waveformXOffest,
+	public static void drawWaveform(PApplet pApplet, Minim minim, AudioSource audioOutput, int waveformMultiplier, float waveformXOffest,
 			float waveformYOffest, float leftRightSpread, int[] strokeRgb) {
+		drawWaveform(pApplet, minim, audioOutput, waveformMultiplier, waveformXOffest, waveformYOffest, leftRightSpread, strokeRgb, 1);
+	}
+
+	/**
+	 * Draw a waveform based on an AudioOutput object at 1/step of its pixel resolution, so fewer lines are drawn. The waveform keeps its width
+	 * of one pixel per sample.
+	 * 
+	 * @param pApplet
+	 * @param minim
+	 * @param audioOutput
+	 * @param waveformMultiplier
+	 * @param waveformXOffest
+	 * @param waveformYOffest
+	 * @param leftRightSpread
+	 * @param strokeRgb
+	 * @param step
+	 *            1 draws a column for every pixel.
+	 * @throws IllegalArgumentException
+	 */
+	public static void drawWaveform(PApplet pApplet, Minim minim, AudioSource audioOutput, int waveformMultiplier, float waveformXOffest,
+			float waveformYOffest, float leftRightSpread, int[] strokeRgb, int step) throws IllegalArgumentException {
+		// toArray() copies each buffer whole, so neither channel changes while it is drawn.
+		float[] left = audioOutput.left.toArray();
+		float[] right = audioOutput.right.toArray();
+		drawWaveform(pApplet, left, right, Math.min(left.length, right.length), waveformMultiplier, waveformXOffest, waveformYOffest,
+				leftRightSpread, strokeRgb, audioOutput.bufferSize() - 1, step);
+	}
+
+	/**
+	 * Draw a waveform from the buffer an AudioSnapshot last took, at 1/step of its pixel resolution. The waveform is one pixel per sample
+	 * wide. Draws nothing until the snapshot has a buffer.
+	 * 
+	 * @param pApplet
+	 * @param audioSnapshot
+	 * @param waveformMultiplier
+	 * @param waveformXOffest
+	 * @param waveformYOffest
+	 * @param leftRightSpread
+	 * @param strokeRgb
+	 * @param step
+	 *            1 draws a column for every pixel.
+	 * @throws IllegalArgumentException
+	 */
+	public static void drawWaveform(PApplet pApplet, AudioSnapshot audioSnapshot, int waveformMultiplier, float waveformXOffest,
+			float waveformYOffest, float leftRightSpread, int[] strokeRgb, int step) throws IllegalArgumentException {
+		if (audioSnapshot.size() < 2)
+			return;
+		drawWaveform(pApplet, audioSnapshot.getLeft(), audioSnapshot.getRight(), audioSnapshot.size(), waveformMultiplier, waveformXOffest,
+				waveformYOffest, leftRightSpread, strokeRgb, audioSnapshot.size() - 1, step);
+	}
+
+	/**
+	 * Draw the left and right channels of a waveform, one above the other, in a given pixel width. Each column shows the lowest and highest
+	 * sample that falls into it, in the order they come, so the cost depends on the width and not on the buffer size, and peaks are not
+	 * lost. Each channel is drawn as a single shape.
+	 * 
+	 * @param pApplet
+	 * @param left
+	 * @param right
+	 * @param sampleCount
+	 *            The number of samples used from each channel.
+	 * @param waveformMultiplier
+	 *            The height of a full scale sample. Samples are between -1 and 1.
+	 * @param waveformXOffest
+	 * @param waveformYOffest
+	 * @param leftRightSpread
+	 *            How far below the top of the waveform the right channel is drawn. The left channel is drawn waveformMultiplier below it.
+	 * @param strokeRgb
+	 * @param width
+	 *            The width of the waveform in pixels.
+	 * @param step
+	 *            The width of a column in pixels. 1 draws a column for every pixel.
+	 * @throws IllegalArgumentException
+	 */
+	public static void drawWaveform(PApplet pApplet, float[] left, float[] right, int sampleCount, int waveformMultiplier, float waveformXOffest,
+			float waveformYOffest, float leftRightSpread, int[] strokeRgb, float width, int step) throws IllegalArgumentException {
+		if (step < 1)
+			throw new IllegalArgumentException("Step must be at least 1. Given: " + step);
+		if (width <= 0)
+			throw new IllegalArgumentException("Width must be more than 0. Given: " + width);
 		/*
 		 * We draw the waveform by connecting neighbor values with a line/ We multiply each of the values by 50 because the values in the buffers are
 		 * normalized. This means that they have values between -1 and 1. If we don't scale them up our waveform will look more or less like a
@@ -31,12 +114,59 @@ public class MinimUtil {
 		 * 
 		 * Source: http://code.compartmental.net/tools/minim/quickstart/
 		 */
+		if (sampleCount < 2 || sampleCount > left.length || sampleCount > right.length)
+			throw new IllegalArgumentException("The sample count must be from 2 to the length of both channels. Given: " + sampleCount);
+		// One column per step pixels, counting both ends, but never more columns than samples.
+		int columns = Math.min(sampleCount, (int) Math.ceil(width / step) + 1);
+		// Each column adds at most two vertices.
+		if (waveformVertices.length < columns * 4)
+			waveformVertices = new float[columns * 4];
+
 		pApplet.stroke(strokeRgb[0], strokeRgb[1], strokeRgb[2]);
-		for (int i = 0; i < audioOutput.bufferSize() - 1; i++) {
-			pApplet.line(waveformXOffest + i, waveformMultiplier + audioOutput.left.get(i) * waveformMultiplier + waveformYOffest, i + 1
-					+ waveformXOffest, waveformMultiplier + audioOutput.left.get(i + 1) * waveformMultiplier + waveformYOffest);
-			pApplet.line(waveformXOffest + i, leftRightSpread + audioOutput.right.get(i) * waveformMultiplier + waveformYOffest, i + 1
-					+ waveformXOffest, leftRightSpread + audioOutput.right.get(i + 1) * waveformMultiplier + waveformYOffest);
+		pApplet.pushStyle();
+		pApplet.noFill();
+		drawChannel(pApplet, left, sampleCount, columns, waveformXOffest, width, waveformMultiplier + waveformYOffest, waveformMultiplier);
+		drawChannel(pApplet, right, sampleCount, columns, waveformXOffest, width, leftRightSpread + waveformYOffest, waveformMultiplier);
+		pApplet.popStyle();
+	}
+
+	/**
+	 * Draw one channel as an open shape through the lowest and highest sample of each column. A column of one sample adds one vertex, so a
+	 * column per sample draws every sample.
+	 */
+	private static void drawChannel(PApplet pApplet, float[] samples, int sampleCount, int columns, float x, float width, float y,
+			float multiplier) {
+		float[] vertices = waveformVertices;
+		float columnWidth = width / (columns - 1);
+		int count = 0;
+		for (int c = 0; c < columns; c++) {
+			int start = (int) ((long) c * sampleCount / columns);
+			int end = (int) ((long) (c + 1) * sampleCount / columns);
+			float min = samples[start], max = min;
+			boolean minFirst = true;
+			for (int i = start + 1; i < end; i++) {
+				float sample = samples[i];
+				if (sample < min) {
+					min = sample;
+					minFirst = false;
+				} else if (sample > max) {
+					max = sample;
+					minFirst = true;
+				}
+			}
+
+			float columnX = x + c * columnWidth;
+			vertices[count++] = columnX;
+			vertices[count++] = y + (minFirst ? min : max) * multiplier;
+			if (max > min) {
+				vertices[count++] = columnX;
+				vertices[count++] = y + (minFirst ? max : min) * multiplier;
+			}
 		}
+
+		pApplet.beginShape();
+		for (int i = 0; i < count; i += 2)
+			pApplet.vertex(vertices[i], vertices[i + 1]);
+		pApplet.endShape();
 	}
 }
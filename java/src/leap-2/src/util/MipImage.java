@@ -0,0 +1,185 @@
+package util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import processing.core.PConstants;
+import processing.core.PImage;
+
+/**
+ * An image with a chain of copies at half, a quarter, an eighth... of its size, so an image drawn small is drawn from a copy close to the
+ * size it is drawn at instead of being resampled from full size every frame.
+ *
+ * The copies are made the first time a smaller one is asked for, on a background thread shared by all MipImages. Until the one asked for is
+ * ready, the smallest ready one that is still at least as big as the image is drawn is used, in the end the image itself.
+ */
+public class MipImage {
+	// Halving stops before either side would be smaller than this.
+	public static final int MIN_LEVEL_SIZE = 16;
+
+	private static ExecutorService builder = null;
+
+	private final PImage base;
+	// Level 0 is the image itself; level n is half the size of level n - 1. Levels are published once they are complete.
+	private final AtomicReferenceArray<PImage> levels;
+	private final AtomicBoolean queued = new AtomicBoolean(false);
+
+	/**
+	 * Call from the animation thread, or from any thread before the image is drawn or handed to another thread, as ImageCache does with the
+	 * images it decodes. Nothing is copied until a smaller level is asked for.
+	 *
+	 * @param base
+	 */
+	public MipImage(PImage base) {
+		this.base = base;
+		// Make sure the pixels are there for the builder thread to read.
+		base.loadPixels();
+		int levelCount = 1;
+		for (int w = base.width / 2, h = base.height / 2; w >= MIN_LEVEL_SIZE && h >= MIN_LEVEL_SIZE; w /= 2, h /= 2)
+			levelCount++;
+		levels = new AtomicReferenceArray<PImage>(levelCount);
+		levels.set(0, base);
+	}
+
+	public PImage getBase() {
+		return base;
+	}
+
+	public int getWidth() {
+		return base.width;
+	}
+
+	public int getHeight() {
+		return base.height;
+	}
+
+	public int getLevelCount() {
+		return levels.length();
+	}
+
+	/**
+	 * @param level
+	 * @return The level, or null if it has not been made yet.
+	 */
+	public PImage getLevel(int level) {
+		return levels.get(level);
+	}
+
+	/**
+	 * @return Whether every level has been made.
+	 */
+	public boolean isBuilt() {
+		return levels.get(levels.length() - 1) != null;
+	}
+
+	/**
+	 * Get the level to draw the image from at a scale: the smallest one that is at least as big as the image is drawn, so no level is
+	 * stretched. Starts making the levels on the background thread the first time a smaller level is wanted.
+	 *
+	 * @param scale
+	 *            The size the image is drawn at, relative to its own size.
+	 * @return
+	 */
+	public PImage getImage(float scale) {
+		int wanted = 0;
+		while (wanted + 1 < levels.length() && (base.width >> (wanted + 1)) >= base.width * scale
+				&& (base.height >> (wanted + 1)) >= base.height * scale)
+			wanted++;
+		if (wanted == 0)
+			return base;
+		if (levels.get(wanted) == null)
+			buildLater();
+		// Levels are made in order, so fall back to the nearest bigger one that is ready.
+		for (int level = wanted; level > 0; level--) {
+			PImage image = levels.get(level);
+			if (image != null)
+				return image;
+		}
+		return base;
+	}
+
+	/**
+	 * Make all the levels on the background thread, if they are not made or being made already.
+	 */
+	public void buildLater() {
+		if (!queued.compareAndSet(false, true))
+			return;
+		getBuilder().execute(new Runnable() {
+			@Override
+			public void run() {
+				build();
+			}
+		});
+	}
+
+	/**
+	 * Make all the levels on this thread. Each level is a 2x2 box filter of the one before.
+	 */
+	public void build() {
+		PImage previous = base;
+		for (int level = 1; level < levels.length(); level++) {
+			PImage image = levels.get(level);
+			if (image == null) {
+				image = halve(previous);
+				levels.compareAndSet(level, null, image);
+				image = levels.get(level);
+			}
+			previous = image;
+		}
+	}
+
+	/**
+	 * Stop the background thread, for when a sketch exits. A later buildLater() starts a new one.
+	 */
+	public static synchronized void shutdown() {
+		if (builder != null) {
+			builder.shutdownNow();
+			builder = null;
+		}
+	}
+
+	private static synchronized ExecutorService getBuilder() {
+		if (builder == null) {
+			builder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "MipImage builder");
+					// Never keep a sketch from exiting, and leave the CPU to draw().
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+		}
+		return builder;
+	}
+
+	/**
+	 * @return An image half the size, each pixel the average of 2x2 pixels. An odd last row or column is dropped.
+	 */
+	private static PImage halve(PImage source) {
+		int width = source.width / 2;
+		int height = source.height / 2;
+		boolean alpha = source.format == PConstants.ARGB;
+		PImage image = new PImage(width, height, alpha ? PConstants.ARGB : PConstants.RGB);
+		int[] src = source.pixels;
+		int[] dst = image.pixels;
+		for (int y = 0; y < height; y++) {
+			int row = 2 * y * source.width;
+			for (int x = 0; x < width; x++) {
+				int i = row + 2 * x;
+				int p0 = src[i], p1 = src[i + 1], p2 = src[i + source.width], p3 = src[i + source.width + 1];
+				// Add the four pixels channel by channel, rounding to nearest.
+				int a = alpha ? ((p0 >>> 24) + (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + 2) >> 2 : 0xff;
+				int r = (((p0 >> 16) & 0xff) + ((p1 >> 16) & 0xff) + ((p2 >> 16) & 0xff) + ((p3 >> 16) & 0xff) + 2) >> 2;
+				int g = (((p0 >> 8) & 0xff) + ((p1 >> 8) & 0xff) + ((p2 >> 8) & 0xff) + ((p3 >> 8) & 0xff) + 2) >> 2;
+				int b = ((p0 & 0xff) + (p1 & 0xff) + (p2 & 0xff) + (p3 & 0xff) + 2) >> 2;
+				dst[y * width + x] = (a << 24) | (r << 16) | (g << 8) | b;
+			}
+		}
+		return image;
+	}
+}
@@ -0,0 +1,270 @@
+package util;
+
+/**
+ * Predicts where each pointable will be when the current draw() reaches the screen, to make up for the latency between the device and the
+ * display. The tip position and direction of each pointable are tracked with an alpha-beta-gamma (constant acceleration) filter and
+ * extrapolated a configurable horizon past the frame's timestamp.
+ *
+ * Feed every device frame to update() (e.g. while draining FrameSource.nextFrame()), then call predict() on the frame about to be drawn. Each
+ * prediction is checked against the first frame that arrives at or after its target time, along with the error of drawing the frame as is, so
+ * the horizon and gains can be tuned. Everything is kept in primitive arrays, so nothing is allocated per frame.
+ */
+public class PointerPredictor {
+	public static final float DEFAULT_HORIZON = 0.025f; // Seconds.
+	public static final float DEFAULT_ALPHA = 0.5f;
+	public static final float DEFAULT_BETA = 0.4f;
+	public static final float DEFAULT_GAMMA = 0.1f;
+
+	private static final int MAX_TRACKED = FrameSnapshot.MAX_POINTABLES;
+	// Tip x, y, z and direction x, y, z.
+	private static final int COMPONENTS = 6;
+	private static final float MICROS_PER_SECOND = 1000000f;
+
+	private final float alpha;
+	private final float beta;
+	private final float gamma;
+	private float horizon = DEFAULT_HORIZON;
+
+	// Filter state per tracked pointable.
+	private final boolean[] tracked = new boolean[MAX_TRACKED];
+	private final int[] ids = new int[MAX_TRACKED];
+	private final long[] timestamps = new long[MAX_TRACKED];
+	private final float[] positions = new float[MAX_TRACKED * COMPONENTS];
+	private final float[] velocities = new float[MAX_TRACKED * COMPONENTS];
+	private final float[] accelerations = new float[MAX_TRACKED * COMPONENTS];
+	private final float[] scratch = new float[COMPONENTS];
+
+	// The prediction waiting to be checked for each tracked pointable: its target time (0 if none), the predicted tip and the tip it was made from.
+	private final long[] targetTimes = new long[MAX_TRACKED];
+	private final float[] predictedTips = new float[MAX_TRACKED * 3];
+	private final float[] sourceTips = new float[MAX_TRACKED * 3];
+
+	// Error statistics, in millimeters of tip position.
+	private int errorCount = 0;
+	private double errorSum = 0;
+	private double rawErrorSum = 0;
+	private float maxError = 0;
+
+	public PointerPredictor() {
+		this(DEFAULT_ALPHA, DEFAULT_BETA, DEFAULT_GAMMA);
+	}
+
+	/**
+	 * @param alpha
+	 *            Position gain, in (0, 1].
+	 * @param beta
+	 *            Velocity gain, in [0, 2).
+	 * @param gamma
+	 *            Acceleration gain, 0 for a constant velocity (alpha-beta) filter.
+	 * @throws IllegalArgumentException
+	 */
+	public PointerPredictor(float alpha, float beta, float gamma) throws IllegalArgumentException {
+		if (alpha <= 0 || alpha > 1 || beta < 0 || beta >= 2 || gamma < 0)
+			throw new IllegalArgumentException("Invalid filter gains. Given: alpha=" + alpha + ", beta=" + beta + ", gamma=" + gamma);
+		this.alpha = alpha;
+		this.beta = beta;
+		this.gamma = gamma;
+	}
+
+	public float getHorizon() {
+		return horizon;
+	}
+
+	/**
+	 * @param horizon
+	 *            How far past the frame timestamp to predict, in seconds. Typically the device latency plus one display frame.
+	 * @throws IllegalArgumentException
+	 */
+	public void setHorizon(float horizon) throws IllegalArgumentException {
+		if (horizon < 0)
+			throw new IllegalArgumentException("Horizon cannot be negative. Given: " + horizon);
+		this.horizon = horizon;
+	}
+
+	/**
+	 * Update the filters with a device frame. Frames must be given in order; a frame that is not newer than the last one is ignored, so the
+	 * latest frame can safely be passed again.
+	 *
+	 * @param frame
+	 */
+	public void update(FrameSnapshot frame) {
+		long timestamp = frame.getTimestamp();
+
+		// Forget pointables that are no longer in view.
+		for (int s = 0; s < MAX_TRACKED; s++) {
+			if (tracked[s] && frame.findPointable(ids[s]) < 0) {
+				tracked[s] = false;
+				targetTimes[s] = 0;
+			}
+		}
+
+		for (int i = 0; i < frame.getPointableCount(); i++) {
+			int s = slot(frame.getPointableId(i));
+			if (s < 0)
+				continue;
+			read(frame, i, scratch);
+
+			if (!tracked[s]) {
+				tracked[s] = true;
+				ids[s] = frame.getPointableId(i);
+				timestamps[s] = timestamp;
+				for (int c = 0; c < COMPONENTS; c++) {
+					positions[s * COMPONENTS + c] = scratch[c];
+					velocities[s * COMPONENTS + c] = 0;
+					accelerations[s * COMPONENTS + c] = 0;
+				}
+				continue;
+			}
+
+			float dt = (timestamp - timestamps[s]) / MICROS_PER_SECOND;
+			if (dt <= 0)
+				continue;
+			checkPrediction(s, timestamp);
+
+			for (int c = 0; c < COMPONENTS; c++) {
+				int j = s * COMPONENTS + c;
+				float position = positions[j] + velocities[j] * dt + accelerations[j] * dt * dt / 2;
+				float velocity = velocities[j] + accelerations[j] * dt;
+				float residual = scratch[c] - position;
+				positions[j] = position + alpha * residual;
+				velocities[j] = velocity + beta * residual / dt;
+				accelerations[j] += 2 * gamma * residual / (dt * dt);
+			}
+			timestamps[s] = timestamp;
+		}
+	}
+
+	/**
+	 * Write a copy of a frame with the tip positions and directions of its pointables replaced by their predicted values.
+	 *
+	 * @param frame
+	 * @param predicted
+	 *            Receives the prediction. May be the same snapshot as frame.
+	 */
+	public void predict(FrameSnapshot frame, FrameSnapshot predicted) {
+		if (predicted != frame)
+			predicted.copyFrom(frame);
+
+		for (int i = 0; i < frame.getPointableCount(); i++) {
+			int s = find(frame.getPointableId(i));
+			if (s < 0)
+				continue;
+
+			// Extrapolate from the last update, which may be older than the frame if the pointable was lost for a moment.
+			float h = horizon + (frame.getTimestamp() - timestamps[s]) / MICROS_PER_SECOND;
+			for (int c = 0; c < COMPONENTS; c++) {
+				int j = s * COMPONENTS + c;
+				scratch[c] = positions[j] + velocities[j] * h + accelerations[j] * h * h / 2;
+			}
+			// Keep the direction a unit vector.
+			float length = (float) Math.sqrt(scratch[3] * scratch[3] + scratch[4] * scratch[4] + scratch[5] * scratch[5]);
+			if (length > 0) {
+				scratch[3] /= length;
+				scratch[4] /= length;
+				scratch[5] /= length;
+			}
+
+			if (targetTimes[s] == 0) {
+				targetTimes[s] = frame.getTimestamp() + (long) (horizon * MICROS_PER_SECOND);
+				System.arraycopy(scratch, 0, predictedTips, s * 3, 3);
+				sourceTips[s * 3] = frame.getTipX(i);
+				sourceTips[s * 3 + 1] = frame.getTipY(i);
+				sourceTips[s * 3 + 2] = frame.getTipZ(i);
+			}
+			predicted.setPointable(i, scratch[0], scratch[1], scratch[2], scratch[3], scratch[4], scratch[5]);
+		}
+	}
+
+	/**
+	 * @return The number of predictions that have been checked.
+	 */
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @return The mean distance between predicted and actual tip positions, in millimeters.
+	 */
+	public float getMeanError() {
+		return errorCount == 0 ? 0 : (float) (errorSum / errorCount);
+	}
+
+	/**
+	 * @return The largest distance between a predicted and actual tip position, in millimeters.
+	 */
+	public float getMaxError() {
+		return maxError;
+	}
+
+	/**
+	 * @return The mean distance the tip moved between the frames that were predicted from and the actual positions, i.e. the error without
+	 *         prediction, in millimeters.
+	 */
+	public float getMeanRawError() {
+		return errorCount == 0 ? 0 : (float) (rawErrorSum / errorCount);
+	}
+
+	public void resetStatistics() {
+		errorCount = 0;
+		errorSum = 0;
+		rawErrorSum = 0;
+		maxError = 0;
+	}
+
+	/**
+	 * Compare the pending prediction for a slot with the measurement in the scratch array, once its target time has come.
+	 */
+	private void checkPrediction(int s, long timestamp) {
+		if (targetTimes[s] == 0 || timestamp < targetTimes[s])
+			return;
+		float error = distance(predictedTips, s * 3);
+		float rawError = distance(sourceTips, s * 3);
+		errorCount++;
+		errorSum += error;
+		rawErrorSum += rawError;
+		if (error > maxError)
+			maxError = error;
+		targetTimes[s] = 0;
+	}
+
+	private float distance(float[] tips, int offset) {
+		float dx = tips[offset] - scratch[0];
+		float dy = tips[offset + 1] - scratch[1];
+		float dz = tips[offset + 2] - scratch[2];
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	private static void read(FrameSnapshot frame, int pointable, float[] out) {
+		out[0] = frame.getTipX(pointable);
+		out[1] = frame.getTipY(pointable);
+		out[2] = frame.getTipZ(pointable);
+		out[3] = frame.getDirectionX(pointable);
+		out[4] = frame.getDirectionY(pointable);
+		out[5] = frame.getDirectionZ(pointable);
+	}
+
+	/**
+	 * @return The slot tracking the pointable, or -1.
+	 */
+	private int find(int pointableId) {
+		for (int s = 0; s < MAX_TRACKED; s++) {
+			if (tracked[s] && ids[s] == pointableId)
+				return s;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The slot tracking the pointable, or a free slot for it, or -1 if all slots are in use.
+	 */
+	private int slot(int pointableId) {
+		int s = find(pointableId);
+		if (s >= 0)
+			return s;
+		for (s = 0; s < MAX_TRACKED; s++) {
+			if (!tracked[s])
+				return s;
+		}
+		return -1;
+	}
+}
@@ -3,10 +3,8 @@ package util;
 import java.awt.Color;
 import java.awt.geom.Point2D;
 import java.io.File;
-import java.io.FilenameFilter;
-import java.util.ArrayList;
-
-import org.apache.commons.lang3.StringUtils;
+import java.io.FileFilter;
+import java.util.Arrays;
 
 import processing.core.PApplet;
 import processing.core.PImage;
@@ -16,6 +14,8 @@ public class ShapeUtil {
 	public static final int[] DEFAULT_STROKE_COLOR = new int[] { 0, 0, 0 };
 	public static final int DEFAULT_ALPHA_MAX = 255;
 	private static final float lineSpacingMultiplier = (float) 0.45;
+	// Measured text boxes, shared by all sketches.
+	private static final TextLayoutCache textLayouts = new TextLayoutCache();
 
 	// Make ctor private so you can only use this class statically.
 	private ShapeUtil() {
@@ -49,17 +49,17 @@ public class ShapeUtil {
 	 */
 	public static float[] getTooltipDimensions(PApplet pApplet, String[] lines, int textSize, float padLeft, float padRight, float padTop,
 			float padBottom) {
-		// Find longest line.
-		float maxLine = 0;
-		for (int i = 0; i < lines.length; i++) {
-			if (pApplet.textWidth(lines[i]) > maxLine) {
-				maxLine = pApplet.textWidth(lines[i]);
-			}
-		}
+		TextLayoutCache.Layout layout = textLayouts.get(pApplet, lines, textSize, padLeft, padRight, padTop, padBottom);
+		return new float[] { layout.getWidth(), layout.getHeight() };
+	}
 
-		float rectWidth = padLeft + maxLine + padRight;
-		float rectHeight = padTop + (textSize * (1 + lineSpacingMultiplier) * lines.length) + padBottom;
-		return new float[] { rectWidth, rectHeight };
+	/**
+	 * @param textSize
+	 * @param lineCount
+	 * @return The height of some lines of text, without padding.
+	 */
+	static float getTextBlockHeight(int textSize, int lineCount) {
+		return textSize * (1 + lineSpacingMultiplier) * lineCount;
 	}
 
 	/**
@@ -124,11 +124,39 @@ public class ShapeUtil {
 	 */
 	public static void drawRectangleWithText(PApplet pApplet, float x, float y, int curve, float padLeft, float padRight, float padTop,
 			float padBottom, int[] rectRgb, int[] textRgb, int textSize, String[] lines, boolean alignRight, boolean alignBottom) {
+		drawRectangleWithText(pApplet, x, y, curve, padLeft, padRight, padTop, padBottom, rectRgb, textRgb, textSize, lines, alignRight, alignBottom,
+				false);
+	}
+
+	/**
+	 * Draw a rectangle on the Processing Applet and place text inside it. The layout is cached, so drawing the same text again does not
+	 * measure it again.
+	 * 
+	 * @param pApplet
+	 * @param x
+	 * @param y
+	 * @param curve
+	 * @param padLeft
+	 * @param padRight
+	 * @param padTop
+	 * @param padBottom
+	 * @param rectRgb
+	 * @param textRgb
+	 * @param textSize
+	 * @param lines
+	 * @param alightRight
+	 * @param alightBottom
+	 * @param prerendered
+	 *            Draw the box from an image rendered the first time, for text that is drawn over and over.
+	 */
+	public static void drawRectangleWithText(PApplet pApplet, float x, float y, int curve, float padLeft, float padRight, float padTop,
+			float padBottom, int[] rectRgb, int[] textRgb, int textSize, String[] lines, boolean alignRight, boolean alignBottom,
+			boolean prerendered) {
 		// Calculate the rectangle dimensions based on the amount of text and
 		// the font size.
-		float[] rectDims = ShapeUtil.getTooltipDimensions(pApplet, lines, textSize, padLeft, padRight, padTop, padBottom);
-		float rectWidth = rectDims[0];
-		float rectHeight = rectDims[1];
+		TextLayoutCache.Layout layout = textLayouts.get(pApplet, lines, textSize, padLeft, padRight, padTop, padBottom);
+		float rectWidth = layout.getWidth();
+		float rectHeight = layout.getHeight();
 
 		// If the rectangle is right or bottom aligned, adjust the x or y
 		// coordinate accordingly.
@@ -138,12 +166,16 @@ public class ShapeUtil {
 															// the
 		// stroke width.
 
-		String text = StringUtils.join(lines, "\n");
+		if (prerendered) {
+			float offset = TextLayoutCache.getImageOffset(pApplet.g.stroke ? pApplet.g.strokeWeight : 0);
+			pApplet.image(textLayouts.getImage(pApplet, layout, curve, rectRgb, textRgb), trueX - offset, trueY - offset);
+			return;
+		}
 		pApplet.fill(rectRgb[0], rectRgb[1], rectRgb[2]);
 		pApplet.rect(trueX, trueY, rectWidth, rectHeight, curve);
 		pApplet.textSize(textSize);
 		pApplet.fill(textRgb[0], textRgb[1], textRgb[2]);
-		pApplet.text(text, trueX + padLeft, trueY + padTop);
+		pApplet.text(layout.getText(), trueX + padLeft, trueY + padTop);
 	}
 
 	/**
@@ -174,39 +206,64 @@ public class ShapeUtil {
 	}
 
 	/**
-	 * Load all images in a given directory into a PImage array.
+	 * Let the user resize the sketch window, or not. Does nothing if the sketch has no window, e.g. when it is run by HeadlessRunner.
 	 * 
 	 * @param pApplet
+	 * @param resizable
+	 */
+	public static void setResizable(PApplet pApplet, boolean resizable) {
+		java.awt.Frame frame = findFrame(pApplet);
+		if (frame != null)
+			frame.setResizable(resizable);
+	}
+
+	/**
+	 * List the image files in a given directory, sorted by name, without loading them.
+	 * 
 	 * @param path
 	 * @return
-	 * @throws Exception
+	 * @throws IllegalArgumentException
 	 */
-	public static PImage[] loadImages(PApplet pApplet, String path) throws Exception {
+	public static File[] listImageFiles(String path) throws IllegalArgumentException {
 		// TODO: Add other file extensions here.
 		final String[] allowedExtensions = new String[] { "jpg", "jpeg", "gif", "tif", "png" };
-		ArrayList<PImage> pImages = new ArrayList<PImage>();
 
-		File[] imagefiles = new File(path).listFiles(new FilenameFilter() {
-			public boolean accept(File dir, String name) {
+		File[] imageFiles = new File(path).listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				if (!file.isFile())
+					return (false);
 				for (final String ext : allowedExtensions) {
-					if (name.toLowerCase().endsWith("." + ext)) {
+					if (file.getName().toLowerCase().endsWith("." + ext)) {
 						return (true);
 					}
 				}
 				return (false);
 			}
 		});
+		if (imageFiles == null)
+			throw new IllegalArgumentException("Not a readable directory: " + path);
+		Arrays.sort(imageFiles);
+		return imageFiles;
+	}
 
-		for (final File fileEntry : imagefiles) {
-			if (fileEntry.isFile()) {
-				PImage tmpImg = pApplet.loadImage(fileEntry.getAbsolutePath());
-				if (tmpImg == null)
-					throw new Exception("The PImage for " + fileEntry.getAbsolutePath() + " was null for some reason");
-				pImages.add(tmpImg);
-			}
+	/**
+	 * Load all images in a given directory into a PImage array. For large directories use an ImageCache, which loads them as they are needed.
+	 * 
+	 * @param pApplet
+	 * @param path
+	 * @return
+	 * @throws Exception
+	 */
+	public static PImage[] loadImages(PApplet pApplet, String path) throws Exception {
+		File[] imageFiles = listImageFiles(path);
+		PImage[] pImages = new PImage[imageFiles.length];
+		for (int i = 0; i < imageFiles.length; i++) {
+			pImages[i] = pApplet.loadImage(imageFiles[i].getAbsolutePath());
+			if (pImages[i] == null)
+				throw new Exception("The PImage for " + imageFiles[i].getAbsolutePath() + " was null for some reason");
 		}
 
-		return pImages.toArray(new PImage[pImages.size()]);
+		return pImages;
 	}
 
 	/**
@@ -233,4 +290,19 @@ public class ShapeUtil {
 		float y = (pApplet.height - effectiveHeight) / 2;
 		pApplet.image(image, x, y, effectiveWidth, effectiveHeight);
 	}
+
+	/**
+	 * Place an image in the center of the window, drawn from the level of its mip chain closest to the scale.
+	 * 
+	 * @param pApplet
+	 * @param image
+	 * @param scale
+	 */
+	public static void centerImage(PApplet pApplet, MipImage image, float scale) {
+		float effectiveWidth = image.getWidth() * scale;
+		float effectiveHeight = image.getHeight() * scale;
+		float x = (pApplet.width - effectiveWidth) / 2;
+		float y = (pApplet.height - effectiveHeight) / 2;
+		pApplet.image(image.getImage(scale), x, y, effectiveWidth, effectiveHeight);
+	}
 }
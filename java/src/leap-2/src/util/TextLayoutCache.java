@@ -0,0 +1,248 @@
+package util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import processing.core.PApplet;
+import processing.core.PFont;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+/**
+ * Remembers the layout of text boxes (tooltips, labels) so that drawing the same text again does not measure it again, keeping the most
+ * recently used layouts up to a capacity.
+ *
+ * A layout is keyed by its lines, font, text size and padding. It can also hold the box and text rendered into an image, for labels that are
+ * drawn over and over: drawing one is then a single image() call. Text that changes every frame is better drawn directly, as rendering the
+ * image costs more than drawing the text once.
+ */
+public class TextLayoutCache {
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * The measured box of some lines of text.
+	 */
+	public static class Layout {
+		private final String text;
+		private final float width;
+		private final float height;
+		private final float padLeft;
+		private final float padTop;
+		private final int textSize;
+		private final PFont font;
+
+		// The rendered box, and the style it was rendered with.
+		private PImage image;
+		private int imageCurve;
+		private int imageRectColor;
+		private int imageTextColor;
+		private int imageStrokeColor;
+		private float imageStrokeWeight;
+
+		private Layout(String[] lines, float width, float height, float padLeft, float padTop, int textSize, PFont font) {
+			this.text = StringUtils.join(lines, "\n");
+			this.width = width;
+			this.height = height;
+			this.padLeft = padLeft;
+			this.padTop = padTop;
+			this.textSize = textSize;
+			this.font = font;
+		}
+
+		/**
+		 * @return The lines joined with newlines, as drawn.
+		 */
+		public String getText() {
+			return text;
+		}
+
+		public float getWidth() {
+			return width;
+		}
+
+		public float getHeight() {
+			return height;
+		}
+	}
+
+	private static class Key {
+		private final String[] lines;
+		private final int textSize;
+		private final float padLeft, padRight, padTop, padBottom;
+		private final PFont font;
+		private final int hash;
+
+		private Key(String[] lines, int textSize, float padLeft, float padRight, float padTop, float padBottom, PFont font) {
+			this.lines = lines;
+			this.textSize = textSize;
+			this.padLeft = padLeft;
+			this.padRight = padRight;
+			this.padTop = padTop;
+			this.padBottom = padBottom;
+			this.font = font;
+			int h = Arrays.hashCode(lines);
+			h = 31 * h + textSize;
+			h = 31 * h + Float.floatToIntBits(padLeft);
+			h = 31 * h + Float.floatToIntBits(padRight);
+			h = 31 * h + Float.floatToIntBits(padTop);
+			h = 31 * h + Float.floatToIntBits(padBottom);
+			h = 31 * h + System.identityHashCode(font);
+			hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key))
+				return false;
+			Key other = (Key) object;
+			return hash == other.hash && textSize == other.textSize && padLeft == other.padLeft && padRight == other.padRight
+					&& padTop == other.padTop && padBottom == other.padBottom && font == other.font && Arrays.equals(lines, other.lines);
+		}
+	}
+
+	private final Map<Key, Layout> layouts;
+	private int hitCount = 0;
+	private int missCount = 0;
+
+	public TextLayoutCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            The most layouts kept. The least recently used one is dropped to make room for a new one.
+	 * @throws IllegalArgumentException
+	 */
+	public TextLayoutCache(final int capacity) throws IllegalArgumentException {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1. Given: " + capacity);
+		// An access-ordered LinkedHashMap is an LRU cache.
+		layouts = new LinkedHashMap<Key, Layout>(capacity * 4 / 3 + 1, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Layout> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Get the layout of a text box in the current font, measuring it if it is not cached.
+	 *
+	 * @param pApplet
+	 * @param lines
+	 * @param textSize
+	 * @param padLeft
+	 * @param padRight
+	 * @param padTop
+	 * @param padBottom
+	 * @return
+	 */
+	public Layout get(PApplet pApplet, String[] lines, int textSize, float padLeft, float padRight, float padTop, float padBottom) {
+		Key key = new Key(lines, textSize, padLeft, padRight, padTop, padBottom, pApplet.g.textFont);
+		Layout layout = layouts.get(key);
+		if (layout != null) {
+			hitCount++;
+			return layout;
+		}
+		missCount++;
+
+		// Measure at the given size, then put the size back.
+		float oldTextSize = pApplet.g.textSize;
+		pApplet.textSize(textSize);
+		float maxLine = 0;
+		for (int i = 0; i < lines.length; i++)
+			maxLine = Math.max(maxLine, pApplet.textWidth(lines[i]));
+		pApplet.textSize(oldTextSize);
+
+		float width = padLeft + maxLine + padRight;
+		float height = padTop + ShapeUtil.getTextBlockHeight(textSize, lines.length) + padBottom;
+		// The font may have been created by textSize(), so key on the one the text was measured in.
+		String[] copy = lines.clone();
+		layout = new Layout(copy, width, height, padLeft, padTop, textSize, pApplet.g.textFont);
+		layouts.put(new Key(copy, textSize, padLeft, padRight, padTop, padBottom, pApplet.g.textFont), layout);
+		return layout;
+	}
+
+	/**
+	 * Get the box of a layout rendered with the current stroke, rendering it if it has not been rendered in this style. The box is at
+	 * (getImageOffset(), getImageOffset()) in the image, to leave room for the stroke.
+	 *
+	 * @param pApplet
+	 * @param layout
+	 * @param curve
+	 *            The radius of the corners.
+	 * @param rectRgb
+	 * @param textRgb
+	 * @return
+	 */
+	public PImage getImage(PApplet pApplet, Layout layout, int curve, int[] rectRgb, int[] textRgb) {
+		int rectColor = pApplet.color(rectRgb[0], rectRgb[1], rectRgb[2]);
+		int textColor = pApplet.color(textRgb[0], textRgb[1], textRgb[2]);
+		int strokeColor = pApplet.g.stroke ? pApplet.g.strokeColor : 0;
+		float strokeWeight = pApplet.g.stroke ? pApplet.g.strokeWeight : 0;
+		if (layout.image != null && layout.imageCurve == curve && layout.imageRectColor == rectColor && layout.imageTextColor == textColor
+				&& layout.imageStrokeColor == strokeColor && layout.imageStrokeWeight == strokeWeight)
+			return layout.image;
+
+		float offset = getImageOffset(strokeWeight);
+		PGraphics pg = pApplet.createGraphics((int) Math.ceil(layout.width + 2 * offset), (int) Math.ceil(layout.height + 2 * offset));
+		pg.beginDraw();
+		if (strokeWeight > 0) {
+			pg.stroke(strokeColor);
+			pg.strokeWeight(strokeWeight);
+		} else {
+			pg.noStroke();
+		}
+		pg.fill(rectColor);
+		pg.rect(offset, offset, layout.width, layout.height, curve);
+		if (layout.font != null)
+			pg.textFont(layout.font);
+		pg.textSize(layout.textSize);
+		pg.textAlign(pApplet.g.textAlign, pApplet.g.textAlignY);
+		pg.fill(textColor);
+		pg.text(layout.text, offset + layout.padLeft, offset + layout.padTop);
+		pg.endDraw();
+
+		layout.image = pg;
+		layout.imageCurve = curve;
+		layout.imageRectColor = rectColor;
+		layout.imageTextColor = textColor;
+		layout.imageStrokeColor = strokeColor;
+		layout.imageStrokeWeight = strokeWeight;
+		return pg;
+	}
+
+	/**
+	 * @param strokeWeight
+	 * @return Where the box is in an image rendered with a stroke weight.
+	 */
+	public static float getImageOffset(float strokeWeight) {
+		return (float) Math.ceil(strokeWeight / 2);
+	}
+
+	public int size() {
+		return layouts.size();
+	}
+
+	public void clear() {
+		layouts.clear();
+	}
+
+	public int getHitCount() {
+		return hitCount;
+	}
+
+	public int getMissCount() {
+		return missCount;
+	}
+}